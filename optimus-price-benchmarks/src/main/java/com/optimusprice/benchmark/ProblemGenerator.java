@@ -0,0 +1,82 @@
+package com.optimusprice.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+
+import lombok.Getter;
+
+/**
+ * Seeded generator of synthetic problems. The same seed and sizes always give the same orders and wallet, so results
+ * are comparable across releases. Every wallet has loyalty points, a number of discount cards with limits covering
+ * 5-30% of the total order value each, and one card without discount able to pay for everything, which keeps every
+ * generated instance feasible.
+ */
+@Getter
+public class ProblemGenerator {
+    private final List<Order> orders;
+    private final Map<String, PaymentMethod> paymentMethods;
+
+    /**
+     * Generates a problem.
+     *
+     * @param orderCount
+     *            Number of orders
+     * @param methodCount
+     *            Number of payment methods, including loyalty points and the fallback card
+     * @param promotionsPerOrder
+     *            Number of promotions attached to every order
+     * @param seed
+     *            Random seed
+     */
+    public ProblemGenerator(int orderCount, int methodCount, int promotionsPerOrder, long seed) {
+        Random random = new Random(seed);
+        int cards = Math.max(1, methodCount - 2);
+
+        orders = new ArrayList<>(orderCount);
+        double total = 0;
+        for (int i = 0; i < orderCount; i++) {
+            double value = 10 + random.nextInt(49_000) / 100.0;
+            List<String> promotions = new ArrayList<>(promotionsPerOrder);
+            for (int p = 0; p < promotionsPerOrder; p++) {
+                String card = "KARTA" + random.nextInt(cards);
+                if (!promotions.contains(card)) {
+                    promotions.add(card);
+                }
+            }
+            orders.add(new Order("ORDER" + i, value, promotions));
+            total += value;
+        }
+
+        paymentMethods = new LinkedHashMap<>();
+        paymentMethods.put("PUNKTY", new PaymentMethod("PUNKTY", 15, round(total * 0.1)));
+        for (int m = 0; m < cards; m++) {
+            String id = "KARTA" + m;
+            double share = 0.05 + random.nextDouble() * 0.25;
+            paymentMethods.put(id, new PaymentMethod(id, 5 + random.nextInt(16), round(total * share)));
+        }
+        paymentMethods.put("GOTOWKA", new PaymentMethod("GOTOWKA", 0, round(total + 1)));
+    }
+
+    /**
+     * Returns fresh copies of the payment methods with full remaining limits, for solves that consume them.
+     *
+     * @return Copied payment methods
+     */
+    public Map<String, PaymentMethod> freshPaymentMethods() {
+        Map<String, PaymentMethod> copy = new LinkedHashMap<>();
+        for (PaymentMethod pm : paymentMethods.values()) {
+            copy.put(pm.getId(), new PaymentMethod(pm.getId(), pm.getDiscount(), pm.getLimit()));
+        }
+        return copy;
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
@@ -0,0 +1,158 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.ortools.linearsolver.MPSolver;
+import com.google.ortools.linearsolver.MPVariable;
+import com.optimusprice.benchmark.ProblemGenerator;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.Variant;
+
+/**
+ * Benchmarks of the individual phases of {@link SolverService#solve()} and of the whole call. Lives in the service
+ * package to reach the package-private phases directly. Run with {@code -prof gc} to also record allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverServiceBenchmark {
+
+    /**
+     * Generated problem together with its variants and optimal selection, shared by all invocations.
+     */
+    @State(Scope.Benchmark)
+    public static class Problem {
+        @Param({ "100", "1000", "10000" })
+        public int orders;
+
+        @Param({ "4", "16" })
+        public int methods;
+
+        @Param({ "1", "3" })
+        public int promotions;
+
+        ProblemGenerator generator;
+        VariantTable table;
+        List<Variant> selected;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SolverEngine.loadNativeLibraries();
+            generator = new ProblemGenerator(orders, methods, promotions, 42);
+
+            SolverService service = service();
+            table = service.generateTable();
+            MPSolver solver = MPSolver.createSolver("SCIP");
+            selected = service.selectVariants(solver, table);
+            solver.delete();
+        }
+
+        SolverService service() {
+            return new SolverService(generator.getOrders(), generator.freshPaymentMethods());
+        }
+    }
+
+    /**
+     * Fresh service with full limits and an empty solver for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        SolverService service;
+        MPSolver solver;
+
+        @Setup(Level.Invocation)
+        public void setUp(Problem problem) {
+            service = problem.service();
+            solver = MPSolver.createSolver("SCIP");
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            solver.delete();
+        }
+    }
+
+    /**
+     * Fully built, not yet solved model for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Built {
+        MPSolver solver;
+
+        @Setup(Level.Invocation)
+        public void setUp(Problem problem) {
+            solver = MPSolver.createSolver("SCIP");
+            problem.service().buildModel(solver, problem.table, null);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            solver.delete();
+        }
+    }
+
+    /**
+     * Optimal selection already charged against a fresh wallet, waiting for points distribution.
+     */
+    @State(Scope.Thread)
+    public static class Selected {
+        SolverService service;
+        List<Variant> variants;
+
+        @Setup(Level.Invocation)
+        public void setUp(Problem problem) {
+            service = problem.service();
+            variants = new ArrayList<>(problem.selected.size());
+            for (Variant v : problem.selected) {
+                variants.add(new Variant(new HashMap<>(v.methods), v.discount, v.orderId));
+            }
+            service.deductLimits(variants);
+        }
+    }
+
+    @Benchmark
+    public VariantTable generateVariants(Fresh fresh) {
+        return fresh.service.generateTable();
+    }
+
+    @Benchmark
+    public MPVariable[][] buildModel(Problem problem, Fresh fresh) {
+        return fresh.service.buildModel(fresh.solver, problem.table, null);
+    }
+
+    @Benchmark
+    public MPSolver.ResultStatus solveModel(Built built) {
+        return built.solver.solve();
+    }
+
+    @Benchmark
+    public List<Variant> distributePoints(Selected selected) {
+        selected.service.distributePoints(selected.variants);
+        return selected.variants;
+    }
+
+    @Benchmark
+    public Map<String, PaymentMethod> solveEndToEnd(Fresh fresh) {
+        return fresh.service.solve();
+    }
+}
@@ -1,35 +1,125 @@
 package com.optimusprice;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.optimusprice.io.AssignmentWriter;
+import com.optimusprice.io.OrderReader;
+import com.optimusprice.io.ProblemReader;
+import com.optimusprice.metrics.SolveMetrics;
 import com.optimusprice.model.Order;
 import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveSnapshot;
+import com.optimusprice.server.CliClient;
+import com.optimusprice.server.CliDaemon;
+import com.optimusprice.server.SolveServer;
+import com.optimusprice.service.Backend;
+import com.optimusprice.service.BulkSolver;
+import com.optimusprice.service.SolveRecorder;
+import com.optimusprice.service.SolverEngine;
 import com.optimusprice.service.SolverService;
 import com.optimusprice.exception.MissingFileException;
+import com.optimusprice.exception.NoOptimalSolutionException;
 
 /**
  * Main application class for processing orders and distributing payment across available payment methods to maximize
  * discount.
  */
 public class App {
+    private static final int DEFAULT_PORT = 8080; // Port of the server mode when none is given
+    static final String BACKEND_PROPERTY = "optimus.backend"; // Backend of the CLI, Backend.SCIP if unset
+    static final String BACKEND_ARGUMENT = "-D" + BACKEND_PROPERTY + "="; // Client's backend, forwarded to the daemon
+    private static final String SOCKET_WAIT_PROPERTY = "optimus.socketWaitMillis"; // Client's wait for the daemon
+
     public static void main(String[] args) {
 
-        if (args.length != 2) {
-            System.out.println("Usage: java -jar optimus-price.jar <orders.json> <paymentmethods.json>");
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
+
+        if ((args.length == 2 || args.length == 3) && args[0].equals("--bulk")) {
+            bulk(args[1], args.length == 3 ? args[2] : null);
             return;
         }
 
+        if (args.length == 1 && args[0].equals("--daemon")) {
+            daemon();
+            return;
+        }
+
+        if (args.length >= 2 && args[0].equals("--replay")) {
+            System.exit(replay(Path.of(args[1]), List.of(args).subList(2, args.length), System.out));
+        }
+
+        if (args.length >= 1 && args[0].equals("--client")) {
+            System.exit(client(List.of(args).subList(1, args.length)));
+        }
+
+        run(Path.of("").toAbsolutePath(), List.of(args), System.out);
+    }
+
+    /**
+     * Solves one orders file against one payment methods file and prints the amount spent per method. Shared by the
+     * one-shot CLI and the daemon.
+     *
+     * @param workingDirectory
+     *            Directory relative file paths are resolved against
+     * @param args
+     *            {@code [-Doptimus.backend=<name>] <orders.json> <paymentmethods.json>
+     *            [--assignments <file> [json|binary]]}; the leading backend argument is how a client passes its
+     *            {@code -Doptimus.backend} to the daemon, and overrides the property of the JVM running this method
+     * @param out
+     *            Stream to print the results to
+     *
+     * @return Exit code
+     */
+    static int run(Path workingDirectory, List<String> args, PrintStream out) {
+        String backendName = System.getProperty(BACKEND_PROPERTY, Backend.SCIP.name());
+        if (!args.isEmpty() && args.get(0).startsWith(BACKEND_ARGUMENT)) {
+            backendName = args.get(0).substring(BACKEND_ARGUMENT.length());
+            args = args.subList(1, args.size());
+        }
+        boolean withAssignments = (args.size() == 4 || args.size() == 5) && args.get(2).equals("--assignments");
+        if (args.size() != 2 && !withAssignments) {
+            out.println("Usage: java -jar optimus-price.jar <orders.json> <paymentmethods.json>"
+                    + " [--assignments <file> [json|binary]]");
+            out.println("       java -jar optimus-price.jar --serve [port]");
+            out.println("       java -jar optimus-price.jar --bulk <problems.jsonl> [results.jsonl]");
+            out.println("       java -jar optimus-price.jar --daemon");
+            out.println("       java -jar optimus-price.jar --client <orders.json> <paymentmethods.json> [...]");
+            out.println("       java -jar optimus-price.jar --replay <snapshot.json> [backend...]");
+            return 0;
+        }
+
+        Backend backend = Backend.named(backendName);
+        if (backend == null) {
+            out.println("Unknown backend " + backendName + " in -D" + BACKEND_PROPERTY + ", expected one of "
+                    + Arrays.toString(Backend.values()));
+            return 1;
+        }
+
         // Validate file paths and read input
-        String ordersPath = args[0];
-        String paymentMethodsPath = args[1];
+        String ordersPath = args.get(0);
+        String paymentMethodsPath = args.get(1);
 
-        File ordersFile = new File(ordersPath);
-        File paymentMethodsFile = new File(paymentMethodsPath);
+        File ordersFile = workingDirectory.resolve(ordersPath).toFile();
+        File paymentMethodsFile = workingDirectory.resolve(paymentMethodsPath).toFile();
 
         if (!ordersFile.exists()) {
             throw new MissingFileException("Orders file not found: " + ordersPath);
@@ -39,33 +129,198 @@ public class App {
             throw new MissingFileException("Payment methods file not found: " + paymentMethodsPath);
         }
 
-        // Parse orders and payment methods
+        // Parse payment methods, then stream orders straight into variant generation
         ObjectMapper objectMapper = new ObjectMapper();
-        List<Order> orders = List.of();
         Map<String, PaymentMethod> paymentMethods = new HashMap<>();
 
         try {
-            orders = objectMapper.readValue(ordersFile,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, Order.class));
-
             List<PaymentMethod> paymentMethodsList = objectMapper.readValue(paymentMethodsFile,
                     objectMapper.getTypeFactory().constructCollectionType(List.class, PaymentMethod.class));
             for (PaymentMethod paymentMethod : paymentMethodsList) {
                 paymentMethods.put(paymentMethod.getId(), paymentMethod);
                 paymentMethod.setRemainingLimit(paymentMethod.getLimit());
             }
-        } catch (IOException e) {
+
+            // Solve, streaming the split of every order if requested, and print results
+            SolverService service = new SolverService(List.of(), paymentMethods);
+            service.setBackend(backend);
+            service.setRecorder(SolveRecorder.fromSystemProperties());
+            AssignmentWriter.Format format = args.size() == 5 && args.get(4).equals("binary")
+                    ? AssignmentWriter.Format.BINARY
+                    : AssignmentWriter.Format.JSON_LINES;
+            try (OrderReader orders = new OrderReader(ordersFile);
+                    AssignmentWriter assignments = withAssignments
+                            ? new AssignmentWriter(
+                                    FileChannel.open(workingDirectory.resolve(args.get(3)), StandardOpenOption.CREATE,
+                                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                                    format, List.copyOf(paymentMethods.keySet()))
+                            : null) {
+                service.setAssignmentSink(assignments);
+                service.solve(orders);
+            }
+        } catch (IOException | UncheckedIOException e) {
             e.printStackTrace();
         }
 
-        // Solve and print results
-        SolverService service = new SolverService(orders, paymentMethods);
-        Map<String, PaymentMethod> distributedPayments = service.solve();
-
-        for (Map.Entry<String, PaymentMethod> entry : distributedPayments.entrySet()) {
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
             String method = entry.getKey();
-            System.out.println(method + " "
+            out.println(method + " "
                     + String.format("%.2f", entry.getValue().getLimit() - entry.getValue().getRemainingLimit()));
         }
+        return 0;
+    }
+
+    /**
+     * Re-solves a snapshot saved by {@link SolveRecorder} under one or more backends, on a fresh copy of the recorded
+     * wallet each time, and prints the timing and outcome of every run next to the recorded ones.
+     *
+     * @param snapshotPath
+     *            Snapshot's {@code .json} file
+     * @param backends
+     *            Names of the backends to replay with; empty to replay with the recorded backend
+     * @param out
+     *            Stream to print the results to
+     *
+     * @return Exit code
+     */
+    static int replay(Path snapshotPath, List<String> backends, PrintStream out) {
+        for (String name : backends) {
+            if (Backend.named(name) == null) {
+                out.println("Unknown backend " + name + ", expected one of " + Arrays.toString(Backend.values()));
+                out.println("Usage: java -jar optimus-price.jar --replay <snapshot.json> [backend...]");
+                return 1;
+            }
+        }
+        if (!snapshotPath.toFile().exists()) {
+            throw new MissingFileException("Snapshot file not found: " + snapshotPath);
+        }
+
+        SolveSnapshot snapshot;
+        try {
+            snapshot = new ObjectMapper().readValue(snapshotPath.toFile(), SolveSnapshot.class);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 1;
+        }
+        List<Order> orders = snapshot.getProblem().getOrders();
+        out.println(String.format("recorded %s %.1f ms %s objective %.2f variables %d", snapshot.getBackend(),
+                snapshot.getTotalMillis(), snapshot.getStatus(), snapshot.getObjective(), snapshot.getVariables()));
+
+        for (String name : backends.isEmpty() ? List.of(snapshot.getBackend()) : backends) {
+            Map<String, PaymentMethod> paymentMethods = new LinkedHashMap<>();
+            for (PaymentMethod pm : snapshot.getProblem().getPaymentMethods()) {
+                paymentMethods.put(pm.getId(),
+                        new PaymentMethod(pm.getId(), pm.getDiscount(), pm.getLimit(), pm.getRemainingLimit()));
+            }
+            SolverService service = new SolverService(orders, paymentMethods);
+            service.setBackend(Backend.named(name));
+            try {
+                service.solve();
+            } catch (NoOptimalSolutionException e) {
+                // The metrics of the failed solve are still printed below
+            }
+            SolveMetrics metrics = service.getLastMetrics();
+            if (metrics == null) {
+                // Without orders the service returns before solving and leaves no metrics
+                out.println(name + " no orders");
+                continue;
+            }
+            out.println(String.format("%s %.1f ms %s objective %.2f variables %d presolved %d", name,
+                    metrics.getTotalNanos() / 1e6, metrics.getStatus(), metrics.getObjective(), metrics.getVariables(),
+                    metrics.getPresolvedOrders()));
+        }
+        return 0;
+    }
+
+    /**
+     * Runs the CLI daemon on a Unix domain socket until the JVM is stopped. The native libraries are loaded up front so
+     * that the first client does not pay for them.
+     */
+    private static void daemon() {
+        try {
+            SolverEngine.loadNativeLibraries();
+            CliDaemon daemon = new CliDaemon(CliDaemon.defaultSocket(), App::run);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            daemon.start();
+            System.out.println("Listening on " + CliDaemon.defaultSocket());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forwards a CLI invocation to a running daemon and prints its output. The daemon solves with the client's
+     * {@code -Doptimus.backend}, if set, rather than its own. With {@code -Doptimus.socketWaitMillis} the client keeps
+     * retrying a daemon that is not listening yet, e.g. one started in the background just before.
+     *
+     * @param args
+     *            Arguments of the one-shot CLI
+     *
+     * @return Exit code of the invocation, or 2 if no daemon could be reached
+     */
+    private static int client(List<String> args) {
+        String backendName = System.getProperty(BACKEND_PROPERTY);
+        if (backendName != null) {
+            List<String> forwarded = new ArrayList<>(args.size() + 1);
+            forwarded.add(BACKEND_ARGUMENT + backendName);
+            forwarded.addAll(args);
+            args = forwarded;
+        }
+        try {
+            return CliClient.forward(CliDaemon.defaultSocket(), Long.getLong(SOCKET_WAIT_PROPERTY, 0),
+                    Path.of("").toAbsolutePath(), args, System.out, System.err);
+        } catch (IOException e) {
+            System.err.println("No daemon at " + CliDaemon.defaultSocket() + ": " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Runs the HTTP solve service on localhost until the JVM is stopped.
+     *
+     * @param port
+     *            Port to listen on
+     */
+    private static void serve(int port) {
+        try {
+            SolveServer server = new SolveServer(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            server.start();
+            System.out.println("Listening on http://localhost:" + server.getPort() + "/solve");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Solves a JSON-lines file of independent problems in parallel and writes one JSON result per line, in input order.
+     *
+     * @param problemsPath
+     *            JSON-lines file with one problem per line
+     * @param resultsPath
+     *            File to write the results to, or null for standard output
+     */
+    private static void bulk(String problemsPath, String resultsPath) {
+        File problemsFile = new File(problemsPath);
+        if (!problemsFile.exists()) {
+            throw new MissingFileException("Problems file not found: " + problemsPath);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        try (ProblemReader problems = new ProblemReader(problemsFile);
+                OutputStream out = new BufferedOutputStream(
+                        resultsPath != null ? new FileOutputStream(resultsPath) : System.out);
+                BulkSolver solver = new BulkSolver()) {
+            solver.solveAll(problems, result -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,13 @@
+package com.optimusprice.exception;
+
+/**
+ * Thrown when a solve keeps losing the limits it chose to concurrent solves on the same wallet.
+ */
+public class LimitConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitConflictException(String message) {
+        super(message);
+        System.err.println("\u001B[31mERROR: " + message + "\u001B[0m");
+    }
+}
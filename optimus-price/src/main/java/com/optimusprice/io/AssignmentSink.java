@@ -0,0 +1,23 @@
+package com.optimusprice.io;
+
+import java.util.Map;
+
+/**
+ * Receives the final payment split of every order as soon as a solve has chosen it, without the caller having to keep
+ * the whole selection.
+ */
+@FunctionalInterface
+public interface AssignmentSink {
+
+    /**
+     * Accepts the split of one order. The map is only valid for the duration of the call.
+     *
+     * @param orderId
+     *            ID of the order
+     * @param payments
+     *            Method ID -> amount paid
+     * @param discount
+     *            Discount obtained for the order
+     */
+    void accept(String orderId, Map<String, Double> payments, double discount);
+}
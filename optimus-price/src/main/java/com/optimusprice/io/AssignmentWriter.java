@@ -0,0 +1,213 @@
+package com.optimusprice.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams per-order assignments to a channel through one reusable direct buffer, so writing millions of them neither
+ * keeps them in memory nor issues a system call per record. Two formats are supported:
+ * <ul>
+ * <li>{@link Format#JSON_LINES} - one {@code {"orderId":...,"payments":{...},"discount":...}} object per line;</li>
+ * <li>{@link Format#BINARY} - big-endian records read back by {@link BinaryAssignmentReader}. The stream starts with
+ * the magic {@code OPA1} and the method table (u16 count, then per method a u16 length and its UTF-8 ID); every record
+ * is the order ID (u16 length + UTF-8), the discount (f64), the number of payments (u16) and per payment the method's
+ * position in the table (u16) and the amount (f64).</li>
+ * </ul>
+ * Not thread-safe.
+ */
+public class AssignmentWriter implements AssignmentSink, Closeable {
+    static final int MAGIC = 0x4F504131; // "OPA1"
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Output formats.
+     */
+    public enum Format {
+        JSON_LINES, BINARY
+    }
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Map<String, Integer> methodIndex = new HashMap<>();
+    private final Map<String, byte[]> jsonKeys = new HashMap<>();
+
+    /**
+     * Opens a writer and, for the binary format, writes the header.
+     *
+     * @param channel
+     *            Channel to write to; closed together with the writer
+     * @param format
+     *            Output format
+     * @param methodIds
+     *            IDs of every payment method an assignment may use
+     *
+     * @throws IOException
+     *             If the header cannot be written
+     */
+    public AssignmentWriter(WritableByteChannel channel, Format format, List<String> methodIds) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        for (String id : methodIds) {
+            methodIndex.put(id, methodIndex.size());
+            jsonKeys.put(id, ('"' + escape(id) + "\":").getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (format == Format.BINARY) {
+            ensure(Integer.BYTES + Short.BYTES);
+            buffer.putInt(MAGIC).putShort((short) methodIds.size());
+            for (String id : methodIds) {
+                putString(id);
+            }
+        }
+    }
+
+    @Override
+    public void accept(String orderId, Map<String, Double> payments, double discount) {
+        try {
+            if (format == Format.BINARY) {
+                writeBinary(orderId, payments, discount);
+            } else {
+                writeJson(orderId, payments, discount);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes out everything buffered so far.
+     *
+     * @throws IOException
+     *             If the channel fails
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Flushes the buffer and closes the channel.
+     *
+     * @throws IOException
+     *             If the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBinary(String orderId, Map<String, Double> payments, double discount) throws IOException {
+        putString(orderId != null ? orderId : "");
+        ensure(Double.BYTES + Short.BYTES + payments.size() * (Short.BYTES + Double.BYTES));
+        buffer.putDouble(discount).putShort((short) payments.size());
+        for (Map.Entry<String, Double> entry : payments.entrySet()) {
+            Integer m = methodIndex.get(entry.getKey());
+            if (m == null) {
+                throw new IllegalArgumentException("Unknown payment method: " + entry.getKey());
+            }
+            buffer.putShort(m.shortValue()).putDouble(entry.getValue());
+        }
+    }
+
+    private void writeJson(String orderId, Map<String, Double> payments, double discount) throws IOException {
+        putAscii("{\"orderId\":\"");
+        putBytes(escape(orderId != null ? orderId : "").getBytes(StandardCharsets.UTF_8));
+        putAscii("\",\"payments\":{");
+        boolean first = true;
+        for (Map.Entry<String, Double> entry : payments.entrySet()) {
+            if (!first) {
+                putAscii(",");
+            }
+            first = false;
+            byte[] key = jsonKeys.get(entry.getKey());
+            putBytes(key != null ? key : ('"' + escape(entry.getKey()) + "\":").getBytes(StandardCharsets.UTF_8));
+            putAscii(Double.toString(entry.getValue()));
+        }
+        putAscii("},\"discount\":");
+        putAscii(Double.toString(discount));
+        putAscii("}\n");
+    }
+
+    /**
+     * Writes a string as a u16 length followed by its UTF-8 bytes.
+     */
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for the binary format: " + value.length());
+        }
+        ensure(Short.BYTES);
+        buffer.putShort((short) bytes.length);
+        putBytes(bytes);
+    }
+
+    private void putAscii(String value) throws IOException {
+        ensure(value.length());
+        for (int c = 0; c < value.length(); c++) {
+            buffer.put((byte) value.charAt(c));
+        }
+    }
+
+    /**
+     * Copies bytes into the buffer, flushing as often as needed for values larger than the buffer.
+     */
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Makes room for the given number of bytes, which must fit into an empty buffer.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Escapes a string for use inside a JSON string literal.
+     */
+    private static String escape(String value) {
+        StringBuilder out = null;
+        for (int c = 0; c < value.length(); c++) {
+            char ch = value.charAt(c);
+            if (ch == '"' || ch == '\\' || ch < 0x20) {
+                if (out == null) {
+                    out = new StringBuilder(value.length() + 8).append(value, 0, c);
+                }
+                switch (ch) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    default -> out.append(String.format("\\u%04x", (int) ch));
+                }
+            } else if (out != null) {
+                out.append(ch);
+            }
+        }
+        return out != null ? out.toString() : value;
+    }
+}
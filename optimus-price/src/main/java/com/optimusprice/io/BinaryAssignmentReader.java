@@ -0,0 +1,99 @@
+package com.optimusprice.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.optimusprice.model.Assignment;
+
+/**
+ * Reads assignments written by {@link AssignmentWriter} in the binary format, one record at a time.
+ */
+public class BinaryAssignmentReader implements Iterator<Assignment>, Closeable {
+    private final DataInputStream in;
+    private final String[] methods;
+    private Assignment next;
+
+    /**
+     * Opens a stream and reads its method table.
+     *
+     * @param channel
+     *            Channel positioned at the start of the stream
+     *
+     * @throws IOException
+     *             If the header cannot be read or the stream is not in the binary assignment format
+     */
+    public BinaryAssignmentReader(ReadableByteChannel channel) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        if (in.readInt() != AssignmentWriter.MAGIC) {
+            in.close();
+            throw new IOException("Not a binary assignment stream");
+        }
+        methods = new String[in.readUnsignedShort()];
+        for (int m = 0; m < methods.length; m++) {
+            methods[m] = readString();
+        }
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Assignment next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Assignment current = next;
+        advance();
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next record, or clears the lookahead at the end of the stream.
+     */
+    private void advance() {
+        try {
+            String orderId;
+            try {
+                orderId = readString();
+            } catch (EOFException e) {
+                next = null;
+                return;
+            }
+            double discount = in.readDouble();
+            int count = in.readUnsignedShort();
+            Map<String, Double> payments = new LinkedHashMap<>();
+            for (int k = 0; k < count; k++) {
+                payments.put(methods[in.readUnsignedShort()], in.readDouble());
+            }
+            next = new Assignment(orderId, Collections.unmodifiableMap(payments), discount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,108 @@
+package com.optimusprice.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.optimusprice.model.Order;
+
+/**
+ * Reads a JSON array of orders one order at a time with Jackson's token-level parser, so only the order currently being
+ * consumed is held in memory. Promotion IDs are interned per reader, so repeated promotions share a single string.
+ */
+public class OrderReader implements Iterator<Order>, Closeable {
+    private final JsonParser parser;
+    private final Map<String, String> interned = new HashMap<>();
+    private Order next;
+
+    /**
+     * Opens an orders file and positions the parser at the start of the array.
+     *
+     * @param file
+     *            JSON file containing an array of orders
+     *
+     * @throws IOException
+     *             If the file cannot be read or does not contain a JSON array
+     */
+    public OrderReader(File file) throws IOException {
+        this.parser = new JsonFactory().createParser(file);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("Expected a JSON array of orders in " + file);
+        }
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Order next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Order current = next;
+        advance();
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Parses the next order of the array, or clears the lookahead at the end of the array.
+     */
+    private void advance() {
+        try {
+            next = parser.nextToken() == JsonToken.START_OBJECT ? readOrder() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the fields of one order; unknown fields are skipped.
+     *
+     * @return Parsed order
+     *
+     * @throws IOException
+     *             If the input is malformed
+     */
+    private Order readOrder() throws IOException {
+        Order order = new Order(null, 0, List.of());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id" -> order.setId(parser.getValueAsString());
+                case "value" -> order.setValue(parser.getValueAsDouble());
+                case "promotions" -> order.setPromotions(token == JsonToken.START_ARRAY ? readPromotions() : List.of());
+                default -> parser.skipChildren();
+            }
+        }
+        return order;
+    }
+
+    private List<String> readPromotions() throws IOException {
+        List<String> promotions = new ArrayList<>(2);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String promotion = parser.getValueAsString();
+            promotions.add(interned.computeIfAbsent(promotion, p -> p));
+        }
+        return promotions;
+    }
+}
@@ -0,0 +1,55 @@
+package com.optimusprice.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.optimusprice.model.Problem;
+
+/**
+ * Reads a JSON-lines file of independent problems, one {@link Problem} object per line, without loading the whole file
+ * into memory.
+ */
+public class ProblemReader implements Iterator<Problem>, Closeable {
+    private final MappingIterator<Problem> problems;
+
+    /**
+     * Opens a problems file.
+     *
+     * @param file
+     *            JSON-lines file with one problem per line
+     *
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    public ProblemReader(File file) throws IOException {
+        this.problems = new ObjectMapper().readerFor(Problem.class).readValues(file);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return problems.hasNextValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Problem next() {
+        try {
+            return problems.nextValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        problems.close();
+    }
+}
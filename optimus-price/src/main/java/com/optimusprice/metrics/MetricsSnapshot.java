@@ -0,0 +1,18 @@
+package com.optimusprice.metrics;
+
+import java.util.Map;
+
+import lombok.Value;
+
+@Value
+/**
+ * Immutable view of the metrics aggregated over all solves recorded so far.
+ */
+public class MetricsSnapshot {
+    long solves; // Finished solves, successful or not
+    long failures; // Solves that ended without a feasible solution
+    Map<SolvePhase, Long> phaseNanos; // Total wall-clock time per phase over all solves
+    long totalNanos; // Total wall-clock time over all solves
+    long maxTotalNanos; // Slowest single solve
+    SolveMetrics last; // Most recent solve, or null if none was recorded
+}
@@ -0,0 +1,45 @@
+package com.optimusprice.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning a whole solve, carrying the shape of the instance and the outcome.
+ */
+@Name("com.optimusprice.Solve")
+@Label("Solve")
+@Category("Optimus Price")
+@Description("Optimization of one set of orders against one wallet")
+class SolveEvent extends jdk.jfr.Event {
+    @Label("Orders")
+    int orders;
+
+    @Label("Presolved Orders")
+    int presolvedOrders;
+
+    @Label("Variables")
+    long variables;
+
+    @Label("Constraints")
+    long constraints;
+
+    @Label("Non-Zeros")
+    long nonZeros;
+
+    @Label("Pruned Variants")
+    int prunedVariants;
+
+    @Label("Pricing Cut Short")
+    boolean pricingCutShort;
+
+    @Label("Status")
+    String status;
+
+    @Label("Objective")
+    double objective;
+
+    @Label("Best Bound")
+    double bestBound;
+}
@@ -0,0 +1,45 @@
+package com.optimusprice.metrics;
+
+import java.util.Map;
+
+import lombok.Value;
+
+@Value
+/**
+ * Immutable measurements of a single solve: where the time went and what the instance looked like.
+ */
+public class SolveMetrics {
+    Map<SolvePhase, Long> phaseNanos; // Wall-clock time per phase
+    long totalNanos; // Wall-clock time of the whole solve
+    int orders; // Orders in the instance
+    int presolvedOrders; // Orders fixed by presolve without the solver
+    long variables; // Decision variables in the model
+    long constraints; // Constraints in the model
+    long nonZeros; // Non-zero coefficients in the constraint matrix
+    int prunedVariants; // Variants removed as dominated
+    boolean pricingCutShort; // Column generation stopped before every column had priced in
+    String status; // Final solver status
+    double objective; // Total discount found
+    double bestBound; // Best bound on the total discount
+
+    /**
+     * Time spent in one phase.
+     *
+     * @param phase
+     *            Phase to look up
+     *
+     * @return Nanoseconds spent in the phase, 0 if it did not run
+     */
+    public long getPhaseNanos(SolvePhase phase) {
+        return phaseNanos.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Relative gap between the objective and the best bound.
+     *
+     * @return (bestBound - objective) / bestBound, or 0 if the bound is not positive
+     */
+    public double getGap() {
+        return bestBound > 0 ? Math.max(0, (bestBound - objective) / bestBound) : 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.optimusprice.metrics;
+
+/**
+ * Phases of a solve that are timed separately.
+ */
+public enum SolvePhase {
+    VARIANT_GENERATION, // Generating and pruning variants, including parsing when orders are streamed
+    PRESOLVE, // Fixing the orders whose payment methods cannot run out
+    MODEL_BUILD, // Creating variables, constraints and objective
+    SOLVE, // Time spent inside the native solver
+    EXTRACTION, // Reading the solution back into variants
+    POINTS_DISTRIBUTION // Moving leftover loyalty points onto selected variants
+}
@@ -0,0 +1,18 @@
+package com.optimusprice.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning one phase of a solve.
+ */
+@Name("com.optimusprice.SolvePhase")
+@Label("Solve Phase")
+@Category("Optimus Price")
+@Description("One timed phase of a solve")
+class SolvePhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,167 @@
+package com.optimusprice.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the measurements of one solve while it runs. Phases may run concurrently (e.g. components of a decomposed
+ * solve), in which case their times and model sizes add up. {@link #finish(int)} turns the trace into
+ * {@link SolveMetrics}, records them into {@link SolverMetrics#global()} and commits the JFR events.
+ */
+public final class SolveTrace {
+    private final long startNanos = System.nanoTime();
+    private final SolveEvent event = new SolveEvent();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(SolvePhase.values().length);
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder presolvedOrders = new LongAdder();
+    private final LongAdder variables = new LongAdder();
+    private final LongAdder constraints = new LongAdder();
+    private final LongAdder nonZeros = new LongAdder();
+    private final DoubleAdder objective = new DoubleAdder();
+    private final DoubleAdder bestBound = new DoubleAdder();
+    private volatile String status = "NOT_SOLVED";
+    private volatile boolean pricingCutShort;
+
+    /**
+     * Starts a trace; the solve is timed from this moment.
+     */
+    public SolveTrace() {
+        event.begin();
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase
+     *            Phase that begins
+     *
+     * @return Span to close when the phase ends
+     */
+    public Span start(SolvePhase phase) {
+        return new Span(phase);
+    }
+
+    /**
+     * Adds orders to the instance size.
+     *
+     * @param count
+     *            Number of orders
+     */
+    public void recordOrders(int count) {
+        orders.add(count);
+    }
+
+    /**
+     * Adds orders fixed by presolve, which are part of the instance but not of the model.
+     *
+     * @param count
+     *            Number of orders
+     */
+    public void recordPresolved(int count) {
+        presolvedOrders.add(count);
+    }
+
+    /**
+     * Records that column generation stopped before every column had priced in, so the model was built on a subset
+     * whose LP bound is not proven.
+     */
+    public void recordPricingCutShort() {
+        pricingCutShort = true;
+    }
+
+    /**
+     * Adds a built model to the instance size.
+     *
+     * @param variableCount
+     *            Decision variables
+     * @param constraintCount
+     *            Constraints
+     * @param nonZeroCount
+     *            Non-zero coefficients in the constraint matrix
+     */
+    public void recordModel(long variableCount, long constraintCount, long nonZeroCount) {
+        variables.add(variableCount);
+        constraints.add(constraintCount);
+        nonZeros.add(nonZeroCount);
+    }
+
+    /**
+     * Records the outcome of a solver run.
+     *
+     * @param solverStatus
+     *            Status reported by the solver
+     * @param value
+     *            Objective value found
+     * @param bound
+     *            Best bound on the objective
+     */
+    public void recordOutcome(String solverStatus, double value, double bound) {
+        status = solverStatus;
+        objective.add(value);
+        bestBound.add(bound);
+    }
+
+    /**
+     * Ends the trace.
+     *
+     * @param prunedVariants
+     *            Variants removed as dominated
+     *
+     * @return Metrics of the solve, also recorded into the global registry
+     */
+    public SolveMetrics finish(int prunedVariants) {
+        long total = System.nanoTime() - startNanos;
+        Map<SolvePhase, Long> phases = new EnumMap<>(SolvePhase.class);
+        for (SolvePhase phase : SolvePhase.values()) {
+            phases.put(phase, phaseNanos.get(phase.ordinal()));
+        }
+
+        SolveMetrics metrics = new SolveMetrics(Collections.unmodifiableMap(phases), total, orders.intValue(),
+                presolvedOrders.intValue(), variables.sum(), constraints.sum(), nonZeros.sum(), prunedVariants,
+                pricingCutShort, status, objective.sum(), bestBound.sum());
+        SolverMetrics.global().record(metrics);
+
+        if (event.shouldCommit()) {
+            event.orders = metrics.getOrders();
+            event.presolvedOrders = metrics.getPresolvedOrders();
+            event.variables = metrics.getVariables();
+            event.constraints = metrics.getConstraints();
+            event.nonZeros = metrics.getNonZeros();
+            event.prunedVariants = prunedVariants;
+            event.pricingCutShort = pricingCutShort;
+            event.status = metrics.getStatus();
+            event.objective = metrics.getObjective();
+            event.bestBound = metrics.getBestBound();
+            event.commit();
+        }
+        return metrics;
+    }
+
+    /**
+     * Running phase of a trace, meant to be opened in a try-with-resources statement around the phase. The span is
+     * never referenced inside the block, so methods doing so suppress the {@code try} lint warning.
+     */
+    public final class Span implements AutoCloseable {
+        private final SolvePhase phase;
+        private final long begin = System.nanoTime();
+        private final SolvePhaseEvent phaseEvent = new SolvePhaseEvent();
+
+        private Span(SolvePhase phase) {
+            this.phase = phase;
+            phaseEvent.begin();
+        }
+
+        @Override
+        public void close() {
+            phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - begin);
+            if (phaseEvent.shouldCommit()) {
+                phaseEvent.phase = phase.name();
+                phaseEvent.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.optimusprice.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe aggregate of the metrics of all solves in the JVM. Solves record into {@link #global()}; callers read it
+ * with {@link #snapshot()}.
+ */
+public final class SolverMetrics {
+    private static final SolverMetrics GLOBAL = new SolverMetrics();
+
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[SolvePhase.values().length];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxTotalNanos = new LongAccumulator(Math::max, 0);
+    private volatile SolveMetrics last;
+
+    /**
+     * Creates an empty registry.
+     */
+    public SolverMetrics() {
+        for (int p = 0; p < phaseNanos.length; p++) {
+            phaseNanos[p] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the registry all solves record into.
+     *
+     * @return JVM-wide registry
+     */
+    public static SolverMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Adds the metrics of a finished solve.
+     *
+     * @param metrics
+     *            Metrics of the solve
+     */
+    public void record(SolveMetrics metrics) {
+        solves.increment();
+        if (!"OPTIMAL".equals(metrics.getStatus()) && !"FEASIBLE".equals(metrics.getStatus())) {
+            failures.increment();
+        }
+        for (SolvePhase phase : SolvePhase.values()) {
+            phaseNanos[phase.ordinal()].add(metrics.getPhaseNanos(phase));
+        }
+        totalNanos.add(metrics.getTotalNanos());
+        maxTotalNanos.accumulate(metrics.getTotalNanos());
+        last = metrics;
+    }
+
+    /**
+     * Takes a consistent-enough copy of the aggregated metrics; counters recorded concurrently may or may not be
+     * included.
+     *
+     * @return Immutable snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        Map<SolvePhase, Long> phases = new EnumMap<>(SolvePhase.class);
+        for (SolvePhase phase : SolvePhase.values()) {
+            phases.put(phase, phaseNanos[phase.ordinal()].sum());
+        }
+        return new MetricsSnapshot(solves.sum(), failures.sum(), Collections.unmodifiableMap(phases), totalNanos.sum(),
+                maxTotalNanos.get(), last);
+    }
+}
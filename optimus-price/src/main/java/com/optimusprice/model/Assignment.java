@@ -0,0 +1,27 @@
+package com.optimusprice.model;
+
+import java.util.Map;
+
+import lombok.Value;
+
+@Value
+/**
+ * Immutable payment split chosen for a single order.
+ */
+public class Assignment {
+    String orderId; // Associated order ID
+    Map<String, Double> payments; // Method ID -> amount paid
+    double discount; // Discount obtained for the order
+
+    /**
+     * Creates an immutable snapshot of a selected variant.
+     *
+     * @param variant
+     *            Selected variant
+     *
+     * @return Assignment with a copy of the variant's payments
+     */
+    public static Assignment of(Variant variant) {
+        return new Assignment(variant.orderId, Map.copyOf(variant.methods), variant.discount);
+    }
+}
@@ -0,0 +1,21 @@
+package com.optimusprice.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+/**
+ * Represents one self-contained solve request: a customer's orders and the wallet to pay them with.
+ */
+public class Problem {
+    private String id; // Optional request or customer ID, echoed back with the result
+    private List<Order> orders; // Orders to pay for
+    private List<PaymentMethod> paymentMethods; // Available payment methods
+}
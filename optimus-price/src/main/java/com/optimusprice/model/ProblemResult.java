@@ -0,0 +1,16 @@
+package com.optimusprice.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Value;
+
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+/**
+ * Outcome of one problem in a bulk run: either its result or the reason it could not be solved.
+ */
+public class ProblemResult {
+    String id; // ID of the problem, as given in the input
+    SolveResult result; // Result of the solve, null if it failed
+    String error; // Failure message, null if the solve succeeded
+}
@@ -0,0 +1,80 @@
+package com.optimusprice.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+
+@Value
+/**
+ * Immutable outcome of a single solve: the chosen split per order and the amount spent per payment method.
+ */
+public class SolveResult {
+    List<Assignment> assignments; // Chosen split for every order
+    Map<String, Double> spent; // Method ID -> total amount spent
+    double totalDiscount; // Sum of discounts over all orders
+    double bestBound; // Proven upper bound on the total discount
+    boolean optimal; // Whether the assignment is proven optimal
+
+    /**
+     * Relative gap between the achieved discount and the best bound.
+     *
+     * @return 0 for proven optimal results, otherwise (bestBound - totalDiscount) / bestBound
+     */
+    public double getGap() {
+        if (optimal || bestBound <= 0) {
+            return 0;
+        }
+        return Math.max(0, (bestBound - totalDiscount) / bestBound);
+    }
+
+    /**
+     * Builds a result from the optimal variants selected by the solver and the payment methods they were paid with.
+     *
+     * @param variants
+     *            Selected variants, one per order
+     * @param paymentMethods
+     *            Payment methods with remaining limits already updated
+     *
+     * @return Immutable result
+     */
+    public static SolveResult of(List<Variant> variants, Map<String, PaymentMethod> paymentMethods) {
+        return of(variants, paymentMethods, Double.NaN, true);
+    }
+
+    /**
+     * Builds a result from the variants selected by the solver and the payment methods they were paid with.
+     *
+     * @param variants
+     *            Selected variants, one per order
+     * @param paymentMethods
+     *            Payment methods with remaining limits already updated
+     * @param bestBound
+     *            Proven upper bound on the total discount, ignored for optimal results
+     * @param optimal
+     *            Whether the variants are proven optimal
+     *
+     * @return Immutable result
+     */
+    public static SolveResult of(List<Variant> variants, Map<String, PaymentMethod> paymentMethods, double bestBound,
+            boolean optimal) {
+        List<Assignment> assignments = new ArrayList<>(variants.size());
+        double totalDiscount = 0;
+        for (Variant variant : variants) {
+            assignments.add(Assignment.of(variant));
+            totalDiscount += variant.discount;
+        }
+
+        Map<String, Double> spent = new LinkedHashMap<>();
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            PaymentMethod pm = entry.getValue();
+            spent.put(entry.getKey(), pm.getLimit() - pm.getRemainingLimit());
+        }
+
+        return new SolveResult(Collections.unmodifiableList(assignments), Collections.unmodifiableMap(spent),
+                totalDiscount, optimal ? totalDiscount : bestBound, optimal);
+    }
+}
@@ -0,0 +1,22 @@
+package com.optimusprice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+/**
+ * Input and outcome of a slow solve, saved so that it can be replayed offline.
+ */
+public class SolveSnapshot {
+    private Problem problem; // Orders and the wallet as they were before the solve
+    private String backend; // Backend the solve was configured with
+    private double totalMillis; // Wall-clock time of the solve
+    private String status; // Final solver status
+    private double objective; // Total discount found
+    private long variables; // Decision variables in the solved model, after presolve
+}
@@ -0,0 +1,122 @@
+package com.optimusprice.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thin client of {@link CliDaemon}: forwards one invocation over the Unix domain socket and replays the daemon's output
+ * locally. Loads neither Jackson nor OR-Tools, so it starts as fast as the JVM does.
+ */
+public final class CliClient {
+    private static final long RETRY_MILLIS = 50; // Pause between attempts to connect to a daemon not yet listening
+
+    private CliClient() {
+    }
+
+    /**
+     * Forwards an invocation to the daemon.
+     *
+     * @param socket
+     *            Path of the daemon's socket file
+     * @param workingDirectory
+     *            Directory relative paths in the arguments are resolved against
+     * @param args
+     *            Command-line arguments
+     * @param out
+     *            Receives the standard output of the invocation
+     * @param err
+     *            Receives the error output of the invocation
+     *
+     * @return Exit code of the invocation
+     *
+     * @throws IOException
+     *             If the daemon cannot be reached
+     */
+    public static int forward(Path socket, Path workingDirectory, List<String> args, PrintStream out, PrintStream err)
+            throws IOException {
+        return forward(socket, 0, workingDirectory, args, out, err);
+    }
+
+    /**
+     * Forwards an invocation to the daemon, waiting for it to start listening if it is not yet.
+     *
+     * @param socket
+     *            Path of the daemon's socket file
+     * @param waitMillis
+     *            How long to keep retrying the connection; 0 to try once
+     * @param workingDirectory
+     *            Directory relative paths in the arguments are resolved against
+     * @param args
+     *            Command-line arguments
+     * @param out
+     *            Receives the standard output of the invocation
+     * @param err
+     *            Receives the error output of the invocation
+     *
+     * @return Exit code of the invocation
+     *
+     * @throws IOException
+     *             If the daemon cannot be reached within the wait
+     */
+    public static int forward(Path socket, long waitMillis, Path workingDirectory, List<String> args, PrintStream out,
+            PrintStream err) throws IOException {
+        try (SocketChannel channel = connect(socket, waitMillis)) {
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+            request.writeUTF(workingDirectory.toString());
+            request.writeInt(args.size());
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(Channels.newInputStream(channel));
+            int code = response.readInt();
+            out.write(response.readNBytes(response.readInt()));
+            out.flush();
+            err.write(response.readNBytes(response.readInt()));
+            err.flush();
+            return code;
+        }
+    }
+
+    /**
+     * Connects to the daemon, retrying every {@link #RETRY_MILLIS} until the wait runs out.
+     *
+     * @param socket
+     *            Path of the daemon's socket file
+     * @param waitMillis
+     *            How long to keep retrying; 0 to try once
+     *
+     * @return Connected channel
+     *
+     * @throws IOException
+     *             Error of the last attempt, or InterruptedIOException if interrupted while waiting
+     */
+    private static SocketChannel connect(Path socket, long waitMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        while (true) {
+            try {
+                return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                if (System.nanoTime() - deadline >= 0) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + socket);
+            }
+        }
+    }
+}
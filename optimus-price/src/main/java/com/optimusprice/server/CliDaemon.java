@@ -0,0 +1,211 @@
+package com.optimusprice.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps one warm JVM serving CLI invocations over a Unix domain socket, so that scripts calling the optimizer many
+ * times pay JVM start-up, class loading and native library extraction once instead of on every call. {@link CliClient}
+ * forwards an invocation as its working directory and arguments; the daemon runs the command and answers with its exit
+ * code, standard output and standard error.
+ * <p>
+ * While the daemon runs, {@link System#err} is routed per thread: whatever an invocation's handler thread writes to it,
+ * such as the error line every exception of this application prints or a stack trace, goes back to that invocation's
+ * client; output of other threads still reaches the daemon's console.
+ * <p>
+ * Wire format (big-endian, strings as in {@link DataOutputStream#writeUTF(String)}): the request is the working
+ * directory, the argument count (int) and the arguments; the response is the exit code (int), the length of the output
+ * (int), the output bytes, the length of the error output (int) and the error bytes.
+ */
+public class CliDaemon implements AutoCloseable {
+    private static final ThreadLocal<PrintStream> REQUEST_ERR = new ThreadLocal<>(); // Invocation's error output
+    private static PrintStream consoleErr; // System.err before routing was installed, null until then
+
+    private final Path socket;
+    private final Command command;
+    private final ServerSocketChannel server;
+    private final ExecutorService handlers;
+    private final Thread acceptor;
+
+    /**
+     * Command run for every forwarded invocation.
+     */
+    @FunctionalInterface
+    public interface Command {
+
+        /**
+         * Runs one invocation.
+         *
+         * @param workingDirectory
+         *            Working directory of the client, for resolving relative paths
+         * @param args
+         *            Command-line arguments
+         * @param out
+         *            Standard output of the invocation
+         *
+         * @return Exit code
+         */
+        int run(Path workingDirectory, List<String> args, PrintStream out);
+    }
+
+    /**
+     * Binds the socket, replacing a stale socket file left by a previous daemon.
+     *
+     * @param socket
+     *            Path of the socket file
+     * @param command
+     *            Command to run for every invocation
+     *
+     * @throws IOException
+     *             If the socket cannot be bound
+     */
+    public CliDaemon(Path socket, Command command) throws IOException {
+        this.socket = socket;
+        this.command = command;
+        Files.deleteIfExists(socket);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        this.handlers = SolveServer.newHandlerExecutor();
+        this.acceptor = new Thread(this::accept, "cli-daemon");
+    }
+
+    /**
+     * Returns the socket path used by the daemon and the client unless the {@code optimus.socket} system property names
+     * another one.
+     *
+     * @return Socket path
+     */
+    public static Path defaultSocket() {
+        return Path.of(System.getProperty("optimus.socket",
+                Path.of(System.getProperty("java.io.tmpdir"), "optimus-price.sock").toString()));
+    }
+
+    /**
+     * Starts accepting invocations.
+     */
+    public void start() {
+        routeStandardError();
+        acceptor.start();
+    }
+
+    /**
+     * Replaces {@link System#err} with a stream that writes to the error output of the invocation running on the
+     * calling thread, or to the original stream outside invocations. Installed once per JVM.
+     */
+    private static synchronized void routeStandardError() {
+        if (consoleErr != null) {
+            return;
+        }
+        consoleErr = System.err;
+        System.setErr(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                target().write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                target().write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                target().flush();
+            }
+
+            private PrintStream target() {
+                PrintStream err = REQUEST_ERR.get();
+                return err != null ? err : consoleErr;
+            }
+        }, true, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stops accepting invocations and removes the socket file.
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        handlers.shutdown();
+    }
+
+    /**
+     * Accept loop; every connection is served on its own handler thread.
+     */
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel connection = server.accept();
+                handlers.execute(() -> serve(connection));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Runs one forwarded invocation and writes its outcome back.
+     *
+     * @param connection
+     *            Client connection
+     */
+    private void serve(SocketChannel connection) {
+        try (connection) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(connection));
+            Path workingDirectory = Path.of(in.readUTF());
+            int count = in.readInt();
+            List<String> args = new ArrayList<>(count);
+            for (int a = 0; a < count; a++) {
+                args.add(in.readUTF());
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            int code;
+            PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+            REQUEST_ERR.set(errStream);
+            try (PrintStream outStream = new PrintStream(out, true, StandardCharsets.UTF_8)) {
+                code = command.run(workingDirectory, args, outStream);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                code = 1;
+            } finally {
+                System.err.flush();
+                REQUEST_ERR.remove();
+            }
+
+            DataOutputStream reply = new DataOutputStream(Channels.newOutputStream(connection));
+            reply.writeInt(code);
+            reply.writeInt(out.size());
+            out.writeTo(reply);
+            reply.writeInt(err.size());
+            err.writeTo(reply);
+            reply.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.optimusprice.server;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.optimusprice.model.Problem;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.service.SolverEngine;
+
+import lombok.Value;
+
+/**
+ * Collects solve requests that arrive concurrently and hands them to {@link SolverEngine#solveBatch(List)} in batches,
+ * so that a burst of small requests is spread over the warm pooled solvers in a few chunks rather than one hand-off per
+ * request. A single dispatcher thread takes whatever is already queued, waits at most one batching window for more and
+ * dispatches; an idle server therefore adds at most one window of latency.
+ */
+public class MicroBatcher implements AutoCloseable {
+    private final SolverEngine engine;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a batcher and starts its dispatcher thread.
+     *
+     * @param engine
+     *            Engine holding the warm solvers
+     * @param window
+     *            How long to wait for more requests after the first one of a batch
+     * @param maxBatch
+     *            Maximum number of requests per batch
+     */
+    public MicroBatcher(SolverEngine engine, Duration window, int maxBatch) {
+        this.engine = engine;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = Math.max(1, maxBatch);
+        this.dispatcher = new Thread(this::dispatch, "solve-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues a problem for the next batch.
+     *
+     * @param problem
+     *            Problem to solve
+     *
+     * @return Future completed with the result, or exceptionally if the solve fails or the batcher is closed
+     */
+    public CompletableFuture<SolveResult> submit(Problem problem) {
+        CompletableFuture<SolveResult> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+            return result;
+        }
+        queue.add(new Pending(problem, result));
+        return result;
+    }
+
+    /**
+     * Dispatcher loop: forms batches and hands them to the engine until the batcher is closed.
+     */
+    private void dispatch() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            List<Problem> problems = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                problems.add(pending.getProblem());
+            }
+            List<CompletableFuture<SolveResult>> solved = engine.solveBatch(problems);
+            for (int p = 0; p < batch.size(); p++) {
+                CompletableFuture<SolveResult> target = batch.get(p).getResult();
+                solved.get(p).whenComplete((value, error) -> {
+                    if (error != null) {
+                        target.completeExceptionally(error);
+                    } else {
+                        target.complete(value);
+                    }
+                });
+            }
+            batch.clear();
+        }
+
+        batch.addAll(queue);
+        for (Pending pending : batch) {
+            pending.getResult().completeExceptionally(new IllegalStateException("Batcher is closed"));
+        }
+    }
+
+    /**
+     * Stops the dispatcher; requests still queued fail.
+     */
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Value
+    /**
+     * Queued request and the future to complete with its result.
+     */
+    private static class Pending {
+        Problem problem; // Problem to solve
+        CompletableFuture<SolveResult> result; // Future handed back to the caller
+    }
+}
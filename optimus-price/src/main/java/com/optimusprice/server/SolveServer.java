@@ -0,0 +1,219 @@
+package com.optimusprice.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.optimusprice.exception.NoOptimalSolutionException;
+import com.optimusprice.metrics.SolverMetrics;
+import com.optimusprice.model.Problem;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.service.SolverEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running HTTP front end bound to the loopback interface. Endpoints:
+ * <ul>
+ * <li>{@code POST /solve} - body is a {@link Problem} as JSON, response is the {@link SolveResult} as JSON (with the
+ * problem's ID echoed back); 400 for malformed input, 422 if no solution exists;</li>
+ * <li>{@code GET /metrics} - the global {@link SolverMetrics} snapshot;</li>
+ * <li>{@code GET /health} - 200 once the server is up.</li>
+ * </ul>
+ * Every request is handled on its own thread: a virtual thread when the runtime supports them, a pooled platform thread
+ * otherwise. Solves themselves go through a {@link MicroBatcher} onto the pooled solvers of one {@link SolverEngine},
+ * so native libraries are loaded once and solvers stay warm between requests.
+ */
+public class SolveServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final SolverEngine engine;
+    private final MicroBatcher batcher;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Creates a server with an engine sized to the available cores and a 1 ms batching window.
+     *
+     * @param port
+     *            Port to listen on, or 0 for an ephemeral port
+     *
+     * @throws IOException
+     *             If the port cannot be bound
+     */
+    public SolveServer(int port) throws IOException {
+        this(port, new SolverEngine(), Duration.ofMillis(1), 64);
+    }
+
+    /**
+     * Creates a server. The server takes ownership of the engine and closes it on {@link #close()}.
+     *
+     * @param port
+     *            Port to listen on, or 0 for an ephemeral port
+     * @param engine
+     *            Engine holding the warm solvers
+     * @param window
+     *            Micro-batching window
+     * @param maxBatch
+     *            Maximum number of requests per batch
+     *
+     * @throws IOException
+     *             If the port cannot be bound
+     */
+    public SolveServer(int port, SolverEngine engine, Duration window, int maxBatch) throws IOException {
+        this.engine = engine;
+        this.batcher = new MicroBatcher(engine, window, maxBatch);
+        this.handlers = newHandlerExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"UP\"}"));
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return Local port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, fails queued requests and frees the solvers.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        batcher.close();
+        handlers.shutdown();
+        engine.close();
+    }
+
+    /**
+     * Handles {@code POST /solve}.
+     *
+     * @param exchange
+     *            HTTP exchange
+     *
+     * @throws IOException
+     *             If the response cannot be written
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Use POST"));
+            return;
+        }
+
+        Problem problem;
+        try (InputStream body = exchange.getRequestBody()) {
+            problem = mapper.readValue(body, Problem.class);
+        } catch (JsonProcessingException e) {
+            respond(exchange, 400, error("Malformed problem: " + e.getOriginalMessage()));
+            return;
+        }
+
+        try {
+            SolveResult result = batcher.submit(problem).get();
+            ObjectNode node = mapper.createObjectNode();
+            if (problem.getId() != null) {
+                node.put("id", problem.getId());
+            }
+            node.setAll((ObjectNode) mapper.valueToTree(result));
+            respond(exchange, 200, mapper.writeValueAsString(node));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NoOptimalSolutionException) {
+                respond(exchange, 422, error(e.getCause().getMessage()));
+            } else {
+                respond(exchange, 500, error(String.valueOf(e.getCause())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("Interrupted"));
+        }
+    }
+
+    /**
+     * Handles {@code GET /metrics}.
+     *
+     * @param exchange
+     *            HTTP exchange
+     *
+     * @throws IOException
+     *             If the response cannot be written
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, mapper.writeValueAsString(SolverMetrics.global().snapshot()));
+    }
+
+    /**
+     * Builds a JSON error body.
+     *
+     * @param message
+     *            Error message
+     *
+     * @return JSON object with the message
+     */
+    private String error(String message) {
+        return mapper.createObjectNode().put("error", message).toString();
+    }
+
+    /**
+     * Writes a JSON response and closes the exchange.
+     *
+     * @param exchange
+     *            HTTP exchange
+     * @param status
+     *            HTTP status code
+     * @param json
+     *            Response body
+     *
+     * @throws IOException
+     *             If the response cannot be written
+     */
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Creates the executor for connection handlers: one virtual thread per request on runtimes that have them (looked
+     * up reflectively, since the project targets Java 17), otherwise a cached pool of daemon platform threads.
+     *
+     * @return Handler executor
+     */
+    static ExecutorService newHandlerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "solve-http-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.optimusprice.service;
+
+/**
+ * Solver backends a {@link SolverService} can select variants with.
+ */
+public enum Backend {
+    SCIP("SCIP"), // Mixed-integer solver used since the first version; robust on every instance shape
+    CBC("CBC"), // Lighter branch-and-cut solver with less start-up and presolve overhead on small models
+    CP_SAT(null), // Constraint solver on a fixed-point copy of the model, searching with several workers in parallel
+    EXACT(null), // Pure-Java branch and bound in integer cents; needs no native library
+    COLUMN_GENERATION("SCIP"), // SCIP on the variants priced in by column generation instead of all variants
+    AUTO(null); // Pick one of the above from the size and shape of each instance
+
+    static final int EXACT_METHODS = 5; // Wallets up to this size are tried with the pure-Java search first
+    static final int EXACT_ORDERS = 64; // ...as long as they pay for at most this many orders
+    static final long EXACT_NODE_LIMIT = 200_000; // Search nodes after which the pure-Java search gives up
+    static final int SMALL_VARIABLES = 200; // Up to this many variables CBC answers before SCIP has warmed up
+    static final int LARGE_VARIABLES = 50_000; // From this many variables on multi-core search pays off
+
+    private final String solverId; // OR-Tools MPSolver ID, null for backends that do not use MPSolver
+
+    Backend(String solverId) {
+        this.solverId = solverId;
+    }
+
+    /**
+     * Looks up a backend by its name, as given on the command line.
+     *
+     * @param name
+     *            Constant name, e.g. {@code SCIP} or {@code AUTO}
+     *
+     * @return Backend, or null if there is none by that name
+     */
+    public static Backend named(String name) {
+        for (Backend backend : values()) {
+            if (backend.name().equals(name)) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the OR-Tools solver identifier of a linear-solver backend.
+     *
+     * @return ID passed to {@link com.google.ortools.linearsolver.MPSolver#createSolver(String)}, or null
+     */
+    String getSolverId() {
+        return solverId;
+    }
+
+    /**
+     * Resolves {@link #AUTO} to a concrete backend for an instance; concrete backends resolve to themselves. Small
+     * wallets paying for few orders go to the pure-Java search, other small models to CBC, large models to CP-SAT when
+     * there is more than one core to search with, everything else to SCIP.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return Backend to solve the instance with
+     */
+    Backend resolve(VariantTable table) {
+        if (this != AUTO) {
+            return this;
+        }
+        if (table.methods.size() <= EXACT_METHODS && table.orderCount() <= EXACT_ORDERS) {
+            return EXACT;
+        }
+        int variables = table.variants;
+        if (variables <= SMALL_VARIABLES) {
+            return CBC;
+        }
+        if (variables >= LARGE_VARIABLES && Runtime.getRuntime().availableProcessors() > 1) {
+            return CP_SAT;
+        }
+        return SCIP;
+    }
+}
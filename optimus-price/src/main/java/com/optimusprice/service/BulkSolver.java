@@ -0,0 +1,159 @@
+package com.optimusprice.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.ortools.linearsolver.MPSolver;
+
+import com.optimusprice.model.Problem;
+import com.optimusprice.model.ProblemResult;
+
+/**
+ * Solves streams of independent problems, e.g. one per customer, on a fixed number of worker threads. Every worker owns
+ * exactly one solver, cleared after each problem. At most a bounded number of problems are in flight at a time: the
+ * input is only read further once the oldest pending result has been handed to the consumer, so a slow consumer or a
+ * long problem throttles reading instead of letting work pile up in memory. Results are delivered in input order.
+ */
+public class BulkSolver implements AutoCloseable {
+    private final ExecutorService workers;
+    private final ThreadLocal<MPSolver> solvers;
+    private final Queue<MPSolver> created = new ConcurrentLinkedQueue<>();
+    private final int maxInFlight;
+
+    /**
+     * Creates a bulk solver backed by SCIP with one worker per available core and four problems in flight per worker.
+     */
+    public BulkSolver() {
+        this("SCIP", Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a bulk solver.
+     *
+     * @param solverId
+     *            OR-Tools solver identifier passed to {@link MPSolver#createSolver(String)}
+     * @param workerCount
+     *            Number of worker threads, each with its own solver
+     * @param maxInFlight
+     *            Maximum number of problems read but not yet delivered
+     */
+    public BulkSolver(String solverId, int workerCount, int maxInFlight) {
+        SolverEngine.loadNativeLibraries();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerCount), task -> {
+            Thread thread = new Thread(task, "bulk-solver-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.solvers = ThreadLocal.withInitial(() -> {
+            MPSolver solver = MPSolver.createSolver(solverId);
+            created.add(solver);
+            return solver;
+        });
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Solves every problem of the stream and hands the results to the consumer in input order, on the calling thread.
+     *
+     * @param problems
+     *            Problems to solve; consumed lazily
+     * @param sink
+     *            Receives one result per problem
+     */
+    public void solveAll(Iterator<Problem> problems, Consumer<ProblemResult> sink) {
+        Deque<Future<ProblemResult>> pending = new ArrayDeque<>(maxInFlight);
+        while (problems.hasNext()) {
+            if (pending.size() == maxInFlight) {
+                sink.accept(await(pending.poll()));
+            }
+            Problem problem = problems.next();
+            pending.add(workers.submit(() -> solveOne(problem)));
+        }
+        while (!pending.isEmpty()) {
+            sink.accept(await(pending.poll()));
+        }
+    }
+
+    /**
+     * Solves every problem of the list.
+     *
+     * @param problems
+     *            Problems to solve
+     *
+     * @return One result per problem, in input order
+     */
+    public List<ProblemResult> solveAll(List<Problem> problems) {
+        List<ProblemResult> results = new ArrayList<>(problems.size());
+        solveAll(problems.iterator(), results::add);
+        return results;
+    }
+
+    /**
+     * Solves one problem on the calling worker's solver. Failures are reported in the result rather than thrown, so one
+     * infeasible customer does not stop the run.
+     *
+     * @param problem
+     *            Problem to solve
+     *
+     * @return Result or failure of the problem
+     */
+    private ProblemResult solveOne(Problem problem) {
+        MPSolver solver = solvers.get();
+        try {
+            return new ProblemResult(problem.getId(), SolverEngine.solveProblem(solver, problem), null);
+        } catch (RuntimeException e) {
+            return new ProblemResult(problem.getId(), null, e.getMessage());
+        } finally {
+            solver.clear();
+        }
+    }
+
+    /**
+     * Waits for a pending result.
+     *
+     * @param future
+     *            Pending solve
+     *
+     * @return Result of the solve
+     */
+    private static ProblemResult await(Future<ProblemResult> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        }
+    }
+
+    /**
+     * Stops the workers once they are idle and frees their solvers.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (MPSolver solver : created) {
+            solver.delete();
+        }
+        created.clear();
+    }
+}
@@ -0,0 +1,384 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.ortools.linearsolver.MPConstraint;
+import com.google.ortools.linearsolver.MPObjective;
+import com.google.ortools.linearsolver.MPSolver;
+import com.google.ortools.linearsolver.MPVariable;
+
+import com.optimusprice.metrics.SolveTrace;
+import com.optimusprice.model.Order;
+
+/**
+ * Generates only the variants that matter, by column generation on the LP relaxation, instead of every variant of every
+ * order up front. The variant families are those of {@link VariantGenerator}: the whole order with a promoted card,
+ * with points, with the minimum points and one card, or with a card without promotion. The last two families have one
+ * member per card, but for given duals only the card with the smallest dual can have the best reduced cost, so pricing
+ * an order costs a walk over the cards sorted by dual rather than one variant per card.
+ * <p>
+ * The restricted master starts from the best member of every family at zero duals plus an artificial "unpaid" column
+ * per order that keeps it feasible at a prohibitive cost. Every round solves the LP with GLOP and adds, per order, the
+ * family members whose reduced cost under the current duals is positive, until no column prices in. The generated
+ * variants form a {@link VariantTable} on which the integer model is solved as usual. This is price-and-branch: the LP
+ * bound is exact, but the integer optimum over the generated columns may in rare cases fall short of the full model.
+ * <p>
+ * If pricing is cut short, after {@code MAX_ROUNDS} rounds or on an LP GLOP does not solve to optimality, every order
+ * additionally gets its variant paid in full with the roomiest card it has no promotion on, so that each order keeps a
+ * column that fits its limits on its own however far pricing got, and the trace records that the columns are
+ * incomplete.
+ */
+final class ColumnGenerator {
+    private static final double EPS = 1e-7;
+    private static final int MAX_ROUNDS = 200; // Pricing rounds after which the columns found so far are used
+
+    private static final int PROMO = 0; // Whole order with a promoted card
+    private static final int POINTS = 1; // Whole order with points
+    private static final int POINTS_CARD = 2; // Minimum points plus one card
+    private static final int FULL = 3; // Whole order with a card without promotion
+
+    private final MethodIndex methods;
+    private final List<Order> orders;
+    private final List<List<Column>> columns; // Generated columns of every order
+    private final Set<Long> known = new HashSet<>(); // (order, family, method) keys of the generated columns
+    private final boolean[] promoted;
+
+    /**
+     * One generated variant, identified by its family and method.
+     */
+    private static final class Column {
+        private final int family;
+        private final int method;
+
+        private Column(int family, int method) {
+            this.family = family;
+            this.method = method;
+        }
+    }
+
+    private ColumnGenerator(MethodIndex methods, List<Order> orders) {
+        this.methods = methods;
+        this.orders = orders;
+        this.columns = new ArrayList<>(orders.size());
+        this.promoted = new boolean[methods.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            columns.add(new ArrayList<>(4));
+        }
+    }
+
+    /**
+     * Generates the variants that price into the LP relaxation.
+     *
+     * @param methods
+     *            Interned payment methods
+     * @param orders
+     *            Orders to generate variants for
+     * @param trace
+     *            Trace of the solve in progress
+     *
+     * @return Generated variants of every order, in input order
+     */
+    static VariantTable generate(MethodIndex methods, List<Order> orders, SolveTrace trace) {
+        ColumnGenerator generator = new ColumnGenerator(methods, orders);
+        MPSolver lp = MPSolver.createSolver("GLOP");
+        boolean complete;
+        try {
+            complete = generator.run(lp);
+        } finally {
+            lp.delete();
+        }
+        if (!complete) {
+            generator.addFullCardColumns();
+            trace.recordPricingCutShort();
+        }
+        return generator.toTable();
+    }
+
+    /**
+     * Runs pricing rounds until no column has a positive reduced cost.
+     *
+     * @param lp
+     *            Empty LP solver
+     *
+     * @return False if pricing was cut short by the round limit or an LP not solved to optimality
+     */
+    private boolean run(MPSolver lp) {
+        MPObjective objective = lp.objective();
+        objective.setMaximization();
+        MPConstraint[] limits = new MPConstraint[methods.size()];
+        for (int m = 0; m < limits.length; m++) {
+            limits[m] = lp.makeConstraint(Double.NEGATIVE_INFINITY, methods.limit[m]);
+        }
+
+        double penalty = 1;
+        for (Order order : orders) {
+            penalty += Math.max(0, order.getValue());
+        }
+        MPConstraint[] choices = new MPConstraint[orders.size()];
+        for (int i = 0; i < choices.length; i++) {
+            choices[i] = lp.makeConstraint(1, 1);
+            MPVariable unpaid = lp.makeNumVar(0, Double.POSITIVE_INFINITY, "");
+            choices[i].setCoefficient(unpaid, 1);
+            objective.setCoefficient(unpaid, -penalty);
+        }
+
+        double[] dual = new double[limits.length];
+        Integer[] byDual = new Integer[limits.length];
+        for (int m = 0; m < byDual.length; m++) {
+            byDual[m] = m;
+        }
+        // Equal duals are broken towards the larger limit, so the first columns pay with the roomiest cards
+        Comparator<Integer> cheapest = Comparator.<Integer> comparingDouble(m -> dual[m])
+                .thenComparing(m -> -methods.limit[m]);
+        Arrays.sort(byDual, cheapest);
+
+        boolean added = price(lp, limits, choices, dual, byDual, null);
+        for (int round = 0; added && round < MAX_ROUNDS; round++) {
+            if (lp.solve() != MPSolver.ResultStatus.OPTIMAL) {
+                return false;
+            }
+            for (int m = 0; m < limits.length; m++) {
+                dual[m] = limits[m].dualValue();
+            }
+            Arrays.sort(byDual, cheapest);
+            added = price(lp, limits, choices, dual, byDual, choices);
+        }
+        return !added;
+    }
+
+    /**
+     * Gives every order its variant paid in full with the roomiest card it has no promotion on, if that card covers the
+     * order and the variant was not generated yet.
+     */
+    private void addFullCardColumns() {
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            double value = order.getValue();
+            if (value <= 0) {
+                continue;
+            }
+            List<String> promos = order.getPromotions() != null ? order.getPromotions() : List.of();
+            for (String method : promos) {
+                int m = methods.idOf(method);
+                if (m >= 0) {
+                    promoted[m] = true;
+                }
+            }
+
+            for (int m : methods.byLimit) {
+                if (methods.limit[m] < value) {
+                    break;
+                }
+                if (m != methods.points && !promoted[m]) {
+                    if (known.add(keyOf(i, FULL, m))) {
+                        columns.get(i).add(new Column(FULL, m));
+                    }
+                    break;
+                }
+            }
+
+            for (String method : promos) {
+                int m = methods.idOf(method);
+                if (m >= 0) {
+                    promoted[m] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds, for every order, the best member of every family whose reduced cost is positive.
+     *
+     * @param lp
+     *            LP solver holding the restricted master
+     * @param limits
+     *            Limit constraints, indexed by method
+     * @param choices
+     *            Choice constraints, indexed by order
+     * @param dual
+     *            Dual value of every limit constraint
+     * @param byDual
+     *            Methods sorted by ascending dual
+     * @param solved
+     *            Choice constraints whose duals to price against, or null to add every family's best member
+     *
+     * @return True if a column was added
+     */
+    private boolean price(MPSolver lp, MPConstraint[] limits, MPConstraint[] choices, double[] dual, Integer[] byDual,
+            MPConstraint[] solved) {
+        int points = methods.points;
+        boolean added = false;
+
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            double value = order.getValue();
+            if (value <= 0) {
+                continue;
+            }
+            double orderDual = solved != null ? solved[i].dualValue() : Double.NEGATIVE_INFINITY;
+            List<String> promos = order.getPromotions() != null ? order.getPromotions() : List.of();
+
+            for (String method : promos) {
+                int m = methods.idOf(method);
+                if (m < 0) {
+                    continue;
+                }
+                promoted[m] = true;
+                if (methods.limit[m] >= value) {
+                    added |= offer(lp, limits, choices[i], dual, orderDual, i, PROMO, m);
+                }
+            }
+
+            if (points >= 0) {
+                if (methods.limit[points] >= value) {
+                    added |= offer(lp, limits, choices[i], dual, orderDual, i, POINTS, points);
+                }
+                if (methods.limit[points] >= 0.1 * value) {
+                    double cashPart = value - 0.1 * value - 0.10 * value;
+                    for (int m : byDual) {
+                        if (m != points && methods.limit[m] >= cashPart) {
+                            added |= offer(lp, limits, choices[i], dual, orderDual, i, POINTS_CARD, m);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            for (int m : byDual) {
+                if (m != points && !promoted[m] && methods.limit[m] >= value) {
+                    added |= offer(lp, limits, choices[i], dual, orderDual, i, FULL, m);
+                    break;
+                }
+            }
+
+            for (String method : promos) {
+                int m = methods.idOf(method);
+                if (m >= 0) {
+                    promoted[m] = false;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds a column to the restricted master if it is new and its reduced cost is positive.
+     *
+     * @return True if the column was added
+     */
+    private boolean offer(MPSolver lp, MPConstraint[] limits, MPConstraint choice, double[] dual, double orderDual,
+            int order, int family, int method) {
+        long key = keyOf(order, family, method);
+        if (known.contains(key)) {
+            return false;
+        }
+
+        double value = orders.get(order).getValue();
+        double[] amounts = new double[2];
+        int[] ids = new int[2];
+        int n = entries(value, family, method, ids, amounts);
+        double discount = discount(value, family, method);
+        double reducedCost = discount - orderDual;
+        for (int e = 0; e < n; e++) {
+            reducedCost -= amounts[e] * dual[ids[e]];
+        }
+        if (reducedCost <= EPS) {
+            return false;
+        }
+
+        MPVariable var = lp.makeNumVar(0, Double.POSITIVE_INFINITY, "");
+        choice.setCoefficient(var, 1);
+        if (discount != 0) {
+            lp.objective().setCoefficient(var, discount);
+        }
+        for (int e = 0; e < n; e++) {
+            if (amounts[e] != 0) {
+                limits[ids[e]].setCoefficient(var, amounts[e]);
+            }
+        }
+        known.add(key);
+        columns.get(order).add(new Column(family, method));
+        return true;
+    }
+
+    /**
+     * Identifies a column within {@link #known}.
+     */
+    private long keyOf(int order, int family, int method) {
+        return ((long) order * 4 + family) * methods.size() + method;
+    }
+
+    /**
+     * Computes the discount of a family member, exactly as {@link VariantGenerator} does.
+     */
+    private double discount(double value, int family, int method) {
+        switch (family) {
+            case PROMO:
+            case POINTS:
+                return value - value * (1 - methods.discount[method] / 100.0);
+            case POINTS_CARD:
+                return 0.10 * value;
+            default:
+                return 0.0;
+        }
+    }
+
+    /**
+     * Computes the payments of a family member, exactly as {@link VariantGenerator} does.
+     *
+     * @return Number of entries written
+     */
+    private int entries(double value, int family, int method, int[] ids, double[] amounts) {
+        switch (family) {
+            case PROMO:
+            case POINTS:
+                ids[0] = method;
+                amounts[0] = value * (1 - methods.discount[method] / 100.0);
+                return 1;
+            case POINTS_CARD:
+                double minPoints = 0.1 * value;
+                ids[0] = methods.points;
+                amounts[0] = minPoints;
+                ids[1] = method;
+                amounts[1] = value - minPoints - 0.10 * value;
+                return 2;
+            default:
+                ids[0] = method;
+                amounts[0] = value;
+                return 1;
+        }
+    }
+
+    /**
+     * Copies the generated columns into a variant table, family by family as {@link VariantGenerator} orders them.
+     *
+     * @return Generated variants of every order
+     */
+    private VariantTable toTable() {
+        VariantTable table = new VariantTable(methods, orders.size());
+        int[] ids = new int[2];
+        double[] amounts = new double[2];
+        for (int i = 0; i < orders.size(); i++) {
+            double value = orders.get(i).getValue();
+            List<Column> generated = columns.get(i);
+            generated.sort((a, b) -> a.family != b.family ? Integer.compare(a.family, b.family)
+                    : Integer.compare(a.method, b.method));
+
+            table.startOrder(orders.get(i).getId());
+            for (Column column : generated) {
+                table.addVariant(discount(value, column.family, column.method));
+                int n = entries(value, column.family, column.method, ids, amounts);
+                for (int e = 0; e < n; e++) {
+                    table.addEntry(ids[e], amounts[e]);
+                }
+            }
+            table.endOrder();
+        }
+        return table;
+    }
+}
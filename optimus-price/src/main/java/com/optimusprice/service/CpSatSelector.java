@@ -0,0 +1,156 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.ortools.sat.BoolVar;
+import com.google.ortools.sat.CpModel;
+import com.google.ortools.sat.CpSolver;
+import com.google.ortools.sat.CpSolverStatus;
+import com.google.ortools.sat.IntVar;
+import com.google.ortools.sat.LinearExpr;
+import com.google.ortools.sat.LinearExprBuilder;
+
+import com.optimusprice.exception.NoOptimalSolutionException;
+import com.optimusprice.metrics.SolvePhase;
+import com.optimusprice.metrics.SolveTrace;
+import com.optimusprice.model.Variant;
+
+/**
+ * Selects variants with the CP-SAT solver. CP-SAT only accepts integer coefficients, so the model is built in fixed
+ * point: limits are floored and amounts rounded up to whole cents, which keeps every assignment CP-SAT accepts within
+ * the real limits, and discounts are scaled to 1/10000 of a currency unit for the objective. The returned objective is
+ * the exact sum of the selected variants' discounts.
+ */
+final class CpSatSelector {
+    static final long CENTS = 100; // Fixed-point scale of amounts and limits
+    static final long OBJECTIVE_SCALE = 10_000; // Fixed-point scale of discounts in the objective
+
+    private CpSatSelector() {
+    }
+
+    /**
+     * Builds the fixed-point model and solves it.
+     *
+     * @param table
+     *            Variants of every row
+     * @param counts
+     *            Number of identical orders behind every row, or null if every row is a single order
+     * @param timeLimitMillis
+     *            Wall-clock budget in milliseconds, or 0 to solve to optimality
+     * @param workers
+     *            Number of parallel search workers
+     * @param trace
+     *            Trace of the solve in progress
+     *
+     * @return Selected variants and their objective, bound and optimality
+     */
+    @SuppressWarnings("try")
+    static Selection select(VariantTable table, int[] counts, long timeLimitMillis, int workers, SolveTrace trace) {
+        CpModel model = new CpModel();
+        IntVar[][] vars;
+        try (SolveTrace.Span span = trace.start(SolvePhase.MODEL_BUILD)) {
+            vars = buildModel(model, table, counts, trace);
+        }
+
+        if (timeLimitMillis > 0 && counts == null) {
+            int[] greedy = GreedyAssigner.assign(table);
+            for (int i = 0; i < vars.length; i++) {
+                for (int j = 0; greedy[i] >= 0 && j < vars[i].length; j++) {
+                    model.addHint(vars[i][j], j == greedy[i] ? 1 : 0);
+                }
+            }
+        }
+
+        CpSolver solver = new CpSolver();
+        solver.getParameters().setNumWorkers(Math.max(1, workers));
+        if (timeLimitMillis > 0) {
+            solver.getParameters().setMaxTimeInSeconds(timeLimitMillis / 1000.0);
+        }
+
+        CpSolverStatus status;
+        try (SolveTrace.Span span = trace.start(SolvePhase.SOLVE)) {
+            status = solver.solve(model);
+        }
+
+        if (status == CpSolverStatus.OPTIMAL || (timeLimitMillis > 0 && status == CpSolverStatus.FEASIBLE)) {
+            List<Variant> selected = new ArrayList<>(table.orderCount());
+            double value = 0;
+            try (SolveTrace.Span span = trace.start(SolvePhase.EXTRACTION)) {
+                for (int i = 0; i < vars.length; i++) {
+                    for (int j = 0; j < vars[i].length; j++) {
+                        for (long k = solver.value(vars[i][j]); k > 0; k--) {
+                            Variant v = table.toVariant(table.orderStart[i] + j, table.orderIds[i]);
+                            selected.add(v);
+                            value += v.discount;
+                        }
+                    }
+                }
+            }
+            boolean optimal = status == CpSolverStatus.OPTIMAL;
+            double bound = optimal ? value : Math.max(value, solver.bestObjectiveBound() / OBJECTIVE_SCALE);
+            trace.recordOutcome(status.name(), value, bound);
+            return new Selection(selected, value, bound, optimal);
+        }
+
+        trace.recordOutcome(status.name(), 0, GreedyAssigner.upperBound(table));
+        throw new NoOptimalSolutionException("Optimal solution not found.");
+    }
+
+    /**
+     * Adds one variable per variant, the choice and limit constraints and the objective.
+     *
+     * @param model
+     *            Empty model
+     * @param table
+     *            Variants of every row
+     * @param counts
+     *            Number of identical orders behind every row, or null if every row is a single order
+     * @param trace
+     *            Trace to record the model size in
+     *
+     * @return Model variables, indexed by row and variant
+     */
+    private static IntVar[][] buildModel(CpModel model, VariantTable table, int[] counts, SolveTrace trace) {
+        MethodIndex methods = table.methods;
+        LinearExprBuilder[] limits = new LinearExprBuilder[methods.size()];
+        for (int m = 0; m < limits.length; m++) {
+            limits[m] = LinearExpr.newBuilder();
+        }
+        LinearExprBuilder objective = LinearExpr.newBuilder();
+        IntVar[][] vars = new IntVar[table.orderCount()][];
+        long nonZeros = 0;
+
+        for (int i = 0; i < vars.length; i++) {
+            int count = counts == null ? 1 : counts[i];
+            IntVar[] row = new IntVar[table.variantCount(i)];
+            vars[i] = row;
+            for (int j = 0; j < row.length; j++) {
+                int v = table.orderStart[i] + j;
+                row[j] = counts == null ? model.newBoolVar("") : model.newIntVar(0, count, "");
+                objective.addTerm(row[j], Math.round(table.discount[v] * OBJECTIVE_SCALE));
+                for (int e = table.entryStart[v]; e < table.entryStart[v + 1]; e++) {
+                    long cents = (long) Math.ceil(table.amount[e] * CENTS - 1e-6);
+                    if (cents != 0) {
+                        limits[table.methodId[e]].addTerm(row[j], cents);
+                        nonZeros++;
+                    }
+                }
+            }
+            if (counts == null) {
+                model.addExactlyOne(Arrays.copyOf(row, row.length, BoolVar[].class));
+            } else {
+                model.addEquality(LinearExpr.sum(row), count);
+            }
+            nonZeros += row.length;
+        }
+
+        for (int m = 0; m < limits.length; m++) {
+            model.addLessOrEqual(limits[m], (long) Math.floor(methods.limit[m] * CENTS + 1e-6));
+        }
+        model.maximize(objective);
+        trace.recordModel(table.variants, limits.length + table.orderCount(), nonZeros);
+        return vars;
+    }
+}
@@ -0,0 +1,232 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.optimusprice.exception.NoOptimalSolutionException;
+import com.optimusprice.metrics.SolvePhase;
+import com.optimusprice.metrics.SolveTrace;
+import com.optimusprice.model.Variant;
+
+/**
+ * Exact pure-Java selection for small wallets: a depth-first branch and bound over the variants of every order, on
+ * integer arithmetic only and without any native library. Amounts and limits are converted to whole cents the same way
+ * as for CP-SAT (see {@link CpSatSelector}), so an accepted assignment never exceeds a real limit. Orders with the
+ * largest attainable discount are branched on first, the variants of an order in decreasing discount, the greedy
+ * assignment of {@link GreedyAssigner} is the first incumbent and a branch is cut as soon as even the best variant of
+ * every remaining order cannot beat it. The search gives up after a node budget so that hard instances can be handed to
+ * a native solver instead. Holds its search state, so one instance serves one solve.
+ */
+final class ExactSelector {
+    private final VariantTable table;
+    private final int[] sequence; // Orders in branching order
+    private final int[][] choices; // Variants of every order (table indices) in decreasing discount
+    private final long[] gain; // Discount of every variant in objective units
+    private final long[] amount; // Amount of every entry in cents
+    private final long[] remaining; // Remaining limit of every method in cents
+    private final long[] suffixBound; // Sum of the best gains of sequence[k..]
+    private final int[] current; // Chosen variant of every order on the current path
+    private final int[] best; // Chosen variant of every order in the incumbent
+    private final long nodeLimit;
+    private long bestValue = -1;
+    private long nodes;
+
+    /**
+     * Prepares the integer model of a table.
+     *
+     * @param table
+     *            Variants of every order
+     * @param nodeLimit
+     *            Maximum number of search nodes before giving up
+     */
+    ExactSelector(VariantTable table, long nodeLimit) {
+        this.table = table;
+        this.nodeLimit = nodeLimit;
+        int orders = table.orderCount();
+
+        gain = new long[table.variants];
+        for (int v = 0; v < gain.length; v++) {
+            gain[v] = Math.round(table.discount[v] * CpSatSelector.OBJECTIVE_SCALE);
+        }
+        amount = new long[table.entryStart[table.variants]];
+        for (int e = 0; e < amount.length; e++) {
+            amount[e] = (long) Math.ceil(table.amount[e] * CpSatSelector.CENTS - 1e-6);
+        }
+        remaining = new long[table.methods.size()];
+        for (int m = 0; m < remaining.length; m++) {
+            remaining[m] = (long) Math.floor(table.methods.limit[m] * CpSatSelector.CENTS + 1e-6);
+        }
+
+        choices = new int[orders][];
+        long[] top = new long[orders];
+        Integer[] order = new Integer[orders];
+        for (int i = 0; i < orders; i++) {
+            Integer[] variants = new Integer[table.variantCount(i)];
+            for (int j = 0; j < variants.length; j++) {
+                variants[j] = table.orderStart[i] + j;
+            }
+            Arrays.sort(variants, Comparator.comparingLong((Integer v) -> gain[v]).reversed());
+            choices[i] = Arrays.stream(variants).mapToInt(Integer::intValue).toArray();
+            top[i] = variants.length > 0 ? gain[variants[0]] : 0;
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> top[i]).reversed());
+        sequence = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+        suffixBound = new long[orders + 1];
+        for (int k = orders - 1; k >= 0; k--) {
+            suffixBound[k] = suffixBound[k + 1] + top[sequence[k]];
+        }
+        current = new int[orders];
+        best = new int[orders];
+    }
+
+    /**
+     * Solves a table exactly.
+     *
+     * @param table
+     *            Variants of every order
+     * @param nodeLimit
+     *            Maximum number of search nodes before giving up
+     * @param trace
+     *            Trace of the solve in progress
+     *
+     * @return Optimal selection, or null if the node budget ran out first, in which case nothing but the phase times is
+     *         recorded in the trace
+     *
+     * @throws NoOptimalSolutionException
+     *             If the search completed without finding any feasible assignment
+     */
+    @SuppressWarnings("try")
+    static Selection select(VariantTable table, long nodeLimit, SolveTrace trace) {
+        ExactSelector search;
+        try (SolveTrace.Span span = trace.start(SolvePhase.MODEL_BUILD)) {
+            search = new ExactSelector(table, nodeLimit);
+            search.seedWithGreedy();
+        }
+
+        boolean complete;
+        try (SolveTrace.Span span = trace.start(SolvePhase.SOLVE)) {
+            complete = search.branch(0, 0);
+        }
+        if (!complete) {
+            // The fallback records its own model and outcome; only the time spent here stays in the phases
+            return null;
+        }
+        trace.recordModel(table.variants, table.methods.size() + table.orderCount(), search.amount.length);
+        if (search.bestValue < 0) {
+            trace.recordOutcome("INFEASIBLE", 0, 0);
+            throw new NoOptimalSolutionException("Optimal solution not found.");
+        }
+
+        List<Variant> selected = new ArrayList<>(table.orderCount());
+        double value = 0;
+        try (SolveTrace.Span span = trace.start(SolvePhase.EXTRACTION)) {
+            for (int i = 0; i < search.best.length; i++) {
+                Variant v = table.toVariant(search.best[i], table.orderIds[i]);
+                selected.add(v);
+                value += v.discount;
+            }
+        }
+        trace.recordOutcome("OPTIMAL", value, value);
+        return new Selection(selected, value, value, true);
+    }
+
+    /**
+     * Takes the greedy assignment as the first incumbent if it is complete and fits the integer limits.
+     */
+    private void seedWithGreedy() {
+        int[] greedy = GreedyAssigner.assign(table);
+        long[] left = remaining.clone();
+        long value = 0;
+        for (int i = 0; i < greedy.length; i++) {
+            if (greedy[i] < 0) {
+                return;
+            }
+            int v = table.orderStart[i] + greedy[i];
+            for (int e = table.entryStart[v]; e < table.entryStart[v + 1]; e++) {
+                left[table.methodId[e]] -= amount[e];
+                if (left[table.methodId[e]] < 0) {
+                    return;
+                }
+            }
+            current[i] = v;
+            value += gain[v];
+        }
+        record(value);
+    }
+
+    /**
+     * Explores all completions of the current path from the k-th order of the sequence on.
+     *
+     * @param k
+     *            Position in the branching sequence
+     * @param value
+     *            Gain of the current path
+     *
+     * @return False if the node budget ran out
+     */
+    private boolean branch(int k, long value) {
+        if (++nodes > nodeLimit) {
+            return false;
+        }
+        if (k == sequence.length) {
+            if (value > bestValue) {
+                record(value);
+            }
+            return true;
+        }
+
+        int i = sequence[k];
+        for (int v : choices[i]) {
+            if (value + gain[v] + suffixBound[k + 1] <= bestValue) {
+                break; // Variants come in decreasing gain, so no later one can do better
+            }
+            if (!take(v)) {
+                continue;
+            }
+            current[i] = v;
+            boolean complete = branch(k + 1, value + gain[v]);
+            release(v);
+            if (!complete) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Charges a variant to the remaining limits if it fits.
+     *
+     * @param v
+     *            Variant to charge
+     *
+     * @return Whether the variant fitted and was charged
+     */
+    private boolean take(int v) {
+        int start = table.entryStart[v];
+        int end = table.entryStart[v + 1];
+        for (int e = start; e < end; e++) {
+            if (amount[e] > remaining[table.methodId[e]]) {
+                return false;
+            }
+        }
+        for (int e = start; e < end; e++) {
+            remaining[table.methodId[e]] -= amount[e];
+        }
+        return true;
+    }
+
+    private void release(int v) {
+        for (int e = table.entryStart[v]; e < table.entryStart[v + 1]; e++) {
+            remaining[table.methodId[e]] += amount[e];
+        }
+    }
+
+    private void record(long value) {
+        bestValue = value;
+        System.arraycopy(current, 0, best, 0, current.length);
+    }
+}
@@ -0,0 +1,87 @@
+package com.optimusprice.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Fast heuristic assignment used as a warm start for the solver. Orders with the largest attainable discount are served
+ * first and each one takes its best variant that still fits into the remaining limits.
+ */
+final class GreedyAssigner {
+    private static final double EPS = 1e-9;
+
+    private GreedyAssigner() {
+    }
+
+    /**
+     * Greedily picks one variant per order.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return Index of the chosen variant within its order for every order, or -1 where no variant fits any more
+     */
+    static int[] assign(VariantTable table) {
+        double[] remaining = table.methods.limit.clone();
+
+        Integer[] byBestDiscount = new Integer[table.orderCount()];
+        double[] best = new double[table.orderCount()];
+        for (int i = 0; i < byBestDiscount.length; i++) {
+            byBestDiscount[i] = i;
+            best[i] = bestDiscount(table, i);
+        }
+        Arrays.sort(byBestDiscount, Comparator.comparingDouble((Integer i) -> best[i]).reversed());
+
+        int[] choice = new int[table.orderCount()];
+        Arrays.fill(choice, -1);
+        for (int i : byBestDiscount) {
+            int first = table.orderStart[i];
+            int chosen = -1;
+            for (int v = first; v < table.orderStart[i + 1]; v++) {
+                if (fits(table, v, remaining) && (chosen < 0 || table.discount[v] > table.discount[chosen])) {
+                    chosen = v;
+                }
+            }
+            if (chosen >= 0) {
+                choice[i] = chosen - first;
+                for (int e = table.entryStart[chosen]; e < table.entryStart[chosen + 1]; e++) {
+                    remaining[table.methodId[e]] -= table.amount[e];
+                }
+            }
+        }
+        return choice;
+    }
+
+    /**
+     * Sums the best discount of every order, which bounds the objective of any assignment from above.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return Upper bound on the total discount
+     */
+    static double upperBound(VariantTable table) {
+        double bound = 0;
+        for (int i = 0; i < table.orderCount(); i++) {
+            bound += bestDiscount(table, i);
+        }
+        return bound;
+    }
+
+    private static double bestDiscount(VariantTable table, int order) {
+        double best = 0;
+        for (int v = table.orderStart[order]; v < table.orderStart[order + 1]; v++) {
+            best = Math.max(best, table.discount[v]);
+        }
+        return best;
+    }
+
+    private static boolean fits(VariantTable table, int v, double[] remaining) {
+        for (int e = table.entryStart[v]; e < table.entryStart[v + 1]; e++) {
+            if (table.amount[e] > remaining[table.methodId[e]] + EPS) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,504 @@
+package com.optimusprice.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import com.google.ortools.linearsolver.MPConstraint;
+import com.google.ortools.linearsolver.MPObjective;
+import com.google.ortools.linearsolver.MPSolver;
+import com.google.ortools.linearsolver.MPVariable;
+
+import com.optimusprice.exception.NoOptimalSolutionException;
+import com.optimusprice.model.Assignment;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.model.Variant;
+
+/**
+ * Keeps the assignment of a wallet's orders optimal as orders are added or cancelled during the day, re-solving only
+ * the orders a delta can affect. As in {@link ProblemDecomposer}, orders interact only through methods whose limit can
+ * bind, i.e. whose worst-case demand over the active orders exceeds the limit; the demand is kept up to date per delta
+ * rather than recomputed. A delta that needs the solver gets a fresh model holding only the orders coupled to it
+ * through binding methods, hinted with their current choice, while every other order keeps its variant. Cancelled
+ * orders are dropped, so the cost of a delta follows the size of its coupled group rather than the number of orders
+ * ever added.
+ * <p>
+ * A delta is settled without the solver when the previous solution provably stays optimal: a new order whose best
+ * variant fits into the unused limits simply takes it, and after a cancellation an order that no longer touches a
+ * binding method takes its best variant, as {@link Presolver} would fix it. After every delta the remaining limits of
+ * the wallet are recomputed, including the loyalty points top-up that {@link SolverService#solve()} applies after
+ * solving.
+ */
+public class IncrementalSolver implements AutoCloseable {
+    private static final double EPS = 1e-9;
+    private static final String POINTS = "PUNKTY";
+
+    private final Map<String, PaymentMethod> paymentMethods;
+    private final MethodIndex index;
+    private final VariantGenerator generator;
+    private final MPSolver solver;
+    private final PaymentMethod[] methods;
+    private final double[] used;
+    private final double[] demand; // Worst-case demand of the active orders by method ID
+    private final List<Set<Row>> users; // Active orders with a variant paying with the method, by method ID
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+    private int suboptimalRows; // Active orders that do not hold their best variant
+    private Row topUpRow; // Order that received the leftover loyalty points
+    private double topUp;
+    private int solves; // Deltas that needed the solver
+    private int lastResolvedOrders; // Orders in the model of the last solver call
+
+    /**
+     * Variants and current choice of one order.
+     */
+    private static final class Row {
+        private final String orderId;
+        private final List<Variant> variants;
+        private final double[] demand; // Largest amount any variant pays with the method, by method ID
+        private final int[] touched; // Method IDs with a non-zero demand
+        private final double bestDiscount;
+        private int chosen = -1;
+
+        private Row(String orderId, VariantTable table) {
+            this.orderId = orderId;
+            this.variants = table.variantsOf(0);
+            this.demand = ProblemDecomposer.worstCaseDemand(table);
+            this.touched = IntStream.range(0, demand.length).filter(m -> demand[m] > 0).toArray();
+            this.bestDiscount = variants.stream().mapToDouble(v -> v.discount).max().orElse(0);
+        }
+    }
+
+    /**
+     * Creates an empty assignment for a wallet.
+     *
+     * @param paymentMethods
+     *            Payment methods whose remaining limits are kept up to date after every delta
+     */
+    public IncrementalSolver(Map<String, PaymentMethod> paymentMethods) {
+        SolverEngine.loadNativeLibraries();
+        this.paymentMethods = paymentMethods;
+        this.index = new MethodIndex(paymentMethods);
+        this.generator = new VariantGenerator(index);
+        this.solver = MPSolver.createSolver("SCIP");
+
+        this.methods = new PaymentMethod[index.size()];
+        this.used = new double[index.size()];
+        this.demand = new double[index.size()];
+        this.users = new ArrayList<>(index.size());
+        for (int m = 0; m < index.size(); m++) {
+            methods[m] = paymentMethods.get(index.ids[m]);
+            users.add(new LinkedHashSet<>());
+        }
+        refreshWallet();
+    }
+
+    /**
+     * Adds an order and re-optimizes the orders coupled to it if needed.
+     *
+     * @param order
+     *            Order to add; its ID must not be active already
+     *
+     * @return Payment split chosen for the order
+     *
+     * @throws NoOptimalSolutionException
+     *             If the order cannot be paid for together with the active ones; the order is not kept
+     */
+    public Assignment add(Order order) {
+        if (rows.containsKey(order.getId())) {
+            throw new IllegalArgumentException("Order already added: " + order.getId());
+        }
+
+        VariantTable table = new VariantTable(index, 1);
+        generator.append(table, order, true);
+        Row row = new Row(order.getId(), table);
+        register(row);
+
+        int best = bestFitting(row);
+        if (best >= 0 && row.variants.get(best).discount >= row.bestDiscount - EPS) {
+            choose(row, best);
+        } else {
+            try {
+                reoptimize(coupled(List.of(row)));
+            } catch (NoOptimalSolutionException e) {
+                unregister(row);
+                throw e;
+            }
+        }
+
+        refreshWallet();
+        return assignment(row);
+    }
+
+    /**
+     * Cancels an active order and re-optimizes the orders it was coupled to if the freed limits could improve them.
+     *
+     * @param orderId
+     *            ID of the order to cancel
+     *
+     * @return True if the order was active
+     */
+    public boolean cancel(String orderId) {
+        Row row = rows.get(orderId);
+        if (row == null) {
+            return false;
+        }
+
+        Set<Row> neighbours = new LinkedHashSet<>();
+        for (int m : row.touched) {
+            if (binding(m)) {
+                neighbours.addAll(users.get(m));
+            }
+        }
+        choose(row, -1);
+        unregister(row);
+        neighbours.remove(row);
+
+        if (suboptimalRows > 0) {
+            List<Row> seeds = new ArrayList<>();
+            for (Row neighbour : neighbours) {
+                if (touchesBinding(neighbour)) {
+                    seeds.add(neighbour);
+                } else {
+                    choose(neighbour, bestVariant(neighbour));
+                }
+            }
+            Collection<Row> group = coupled(seeds);
+            if (group.stream().anyMatch(IncrementalSolver::isSuboptimal)) {
+                reoptimize(group);
+            }
+        }
+        refreshWallet();
+        return true;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current assignment of all active orders.
+     *
+     * @return Current result
+     */
+    public SolveResult current() {
+        List<Variant> selected = new ArrayList<>(rows.size());
+        for (Row row : rows.values()) {
+            selected.add(toppedUp(row));
+        }
+        return SolveResult.of(selected, paymentMethods);
+    }
+
+    /**
+     * Returns how many deltas so far needed the solver; the others were settled without it.
+     *
+     * @return Number of solver calls
+     */
+    public int getSolves() {
+        return solves;
+    }
+
+    /**
+     * Returns how many orders the last solver call re-optimized; the other active orders kept their variant.
+     *
+     * @return Number of orders in the last model, 0 before the first solver call
+     */
+    public int getLastResolvedOrders() {
+        return lastResolvedOrders;
+    }
+
+    /**
+     * Frees the native solver.
+     */
+    @Override
+    public void close() {
+        solver.delete();
+    }
+
+    /**
+     * Makes an order active and adds its variants to the worst-case demand.
+     *
+     * @param row
+     *            Order to add
+     */
+    private void register(Row row) {
+        rows.put(row.orderId, row);
+        for (int m : row.touched) {
+            demand[m] += row.demand[m];
+            users.get(m).add(row);
+        }
+    }
+
+    /**
+     * Drops an order, which must hold no variant, from the active ones and from the worst-case demand.
+     *
+     * @param row
+     *            Order to drop
+     */
+    private void unregister(Row row) {
+        rows.remove(row.orderId);
+        for (int m : row.touched) {
+            demand[m] -= row.demand[m];
+            users.get(m).remove(row);
+        }
+    }
+
+    private boolean binding(int m) {
+        return demand[m] > index.limit[m] + EPS;
+    }
+
+    private boolean touchesBinding(Row row) {
+        for (int m : row.touched) {
+            if (binding(m)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSuboptimal(Row row) {
+        return row.chosen < 0 || row.variants.get(row.chosen).discount < row.bestDiscount - EPS;
+    }
+
+    /**
+     * Collects the active orders connected to the given ones through binding methods.
+     *
+     * @param seeds
+     *            Orders to start from
+     *
+     * @return The seeds and every order coupled to them, in the order they were reached
+     */
+    private Collection<Row> coupled(List<Row> seeds) {
+        Set<Row> group = new LinkedHashSet<>(seeds);
+        ArrayDeque<Row> queue = new ArrayDeque<>(seeds);
+        boolean[] visited = new boolean[index.size()];
+        while (!queue.isEmpty()) {
+            for (int m : queue.poll().touched) {
+                if (visited[m] || !binding(m)) {
+                    continue;
+                }
+                visited[m] = true;
+                for (Row user : users.get(m)) {
+                    if (group.add(user)) {
+                        queue.add(user);
+                    }
+                }
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Re-solves a group of orders on a fresh model, hinting their current choices. The limits of the model are what the
+     * orders outside the group leave unused, and those orders keep their variants.
+     *
+     * @param group
+     *            Orders to re-optimize
+     */
+    private void reoptimize(Collection<Row> group) {
+        double[] free = new double[methods.length];
+        for (int m = 0; m < free.length; m++) {
+            free[m] = index.limit[m] - used[m];
+        }
+        for (Row row : group) {
+            if (row.chosen >= 0) {
+                for (Map.Entry<String, Double> entry : row.variants.get(row.chosen).methods.entrySet()) {
+                    int m = index.idOf(entry.getKey());
+                    if (m >= 0) {
+                        free[m] += entry.getValue();
+                    }
+                }
+            }
+        }
+
+        solver.clear();
+        MPObjective objective = solver.objective();
+        objective.setMaximization();
+        MPConstraint[] limits = new MPConstraint[free.length];
+        for (int m = 0; m < free.length; m++) {
+            limits[m] = solver.makeConstraint(0, Math.max(0, free[m]));
+        }
+
+        List<MPVariable[]> vars = new ArrayList<>(group.size());
+        List<MPVariable> hinted = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (Row row : group) {
+            MPConstraint choice = solver.makeConstraint(1, 1);
+            MPVariable[] rowVars = new MPVariable[row.variants.size()];
+            for (int j = 0; j < rowVars.length; j++) {
+                Variant v = row.variants.get(j);
+                rowVars[j] = solver.makeBoolVar("");
+                choice.setCoefficient(rowVars[j], 1);
+                if (v.discount != 0) {
+                    objective.setCoefficient(rowVars[j], v.discount);
+                }
+                for (Map.Entry<String, Double> entry : v.methods.entrySet()) {
+                    int m = index.idOf(entry.getKey());
+                    if (m >= 0 && entry.getValue() != 0) {
+                        limits[m].setCoefficient(rowVars[j], entry.getValue());
+                    }
+                }
+                if (row.chosen >= 0) {
+                    hinted.add(rowVars[j]);
+                    values.add(j == row.chosen ? 1.0 : 0.0);
+                }
+            }
+            vars.add(rowVars);
+        }
+
+        solver.setHint(hinted.toArray(new MPVariable[0]), values.stream().mapToDouble(Double::doubleValue).toArray());
+        solves++;
+        lastResolvedOrders = group.size();
+        if (solver.solve() != MPSolver.ResultStatus.OPTIMAL) {
+            throw new NoOptimalSolutionException("Optimal solution not found.");
+        }
+
+        int r = 0;
+        for (Row row : group) {
+            MPVariable[] rowVars = vars.get(r++);
+            for (int j = 0; j < rowVars.length; j++) {
+                if (rowVars[j].solutionValue() > 0.5) {
+                    choose(row, j);
+                    break;
+                }
+            }
+        }
+    }
+
+    private int bestVariant(Row row) {
+        int best = -1;
+        for (int j = 0; j < row.variants.size(); j++) {
+            if (best < 0 || row.variants.get(j).discount > row.variants.get(best).discount) {
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the highest-discount variant of an order that fits into the limits left unused by the other orders.
+     *
+     * @param row
+     *            Order to check
+     *
+     * @return Variant index, or -1 if none fits
+     */
+    private int bestFitting(Row row) {
+        int best = -1;
+        for (int j = 0; j < row.variants.size(); j++) {
+            Variant v = row.variants.get(j);
+            if ((best < 0 || v.discount > row.variants.get(best).discount) && fits(v)) {
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    private boolean fits(Variant v) {
+        for (Map.Entry<String, Double> entry : v.methods.entrySet()) {
+            int m = index.idOf(entry.getKey());
+            if (m >= 0 && used[m] + entry.getValue() > methods[m].getLimit() + EPS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Switches an order to another variant and updates the used amounts.
+     *
+     * @param row
+     *            Order to update
+     * @param j
+     *            Index of the new variant, or -1 to clear the choice
+     */
+    private void choose(Row row, int j) {
+        if (row.chosen == j) {
+            return;
+        }
+        if (row.chosen >= 0) {
+            charge(row.variants.get(row.chosen), -1);
+            if (row.variants.get(row.chosen).discount < row.bestDiscount - EPS) {
+                suboptimalRows--;
+            }
+        }
+        row.chosen = j;
+        if (j >= 0) {
+            charge(row.variants.get(j), 1);
+            if (row.variants.get(j).discount < row.bestDiscount - EPS) {
+                suboptimalRows++;
+            }
+        }
+    }
+
+    private void charge(Variant v, int sign) {
+        for (Map.Entry<String, Double> entry : v.methods.entrySet()) {
+            int m = index.idOf(entry.getKey());
+            if (m >= 0) {
+                used[m] += sign * entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Recomputes the remaining limits of the wallet from the used amounts and moves leftover loyalty points onto the
+     * first order paying with points and a card, as the points distribution of {@link SolverService} does.
+     */
+    private void refreshWallet() {
+        for (int m = 0; m < methods.length; m++) {
+            methods[m].setRemainingLimit(methods[m].getLimit() - used[m]);
+        }
+
+        topUpRow = null;
+        topUp = 0;
+        PaymentMethod points = paymentMethods.get(POINTS);
+        if (points == null || points.getRemainingLimit() <= EPS) {
+            return;
+        }
+
+        double remainingPoints = points.getRemainingLimit();
+        for (Row row : rows.values()) {
+            Variant v = row.variants.get(row.chosen);
+            if (v.methods.size() < 2 || !v.methods.containsKey(POINTS)) {
+                continue;
+            }
+            for (Map.Entry<String, Double> entry : v.methods.entrySet()) {
+                if (!entry.getKey().equals(POINTS) && remainingPoints < entry.getValue()) {
+                    PaymentMethod card = paymentMethods.get(entry.getKey());
+                    card.setRemainingLimit(card.getRemainingLimit() + remainingPoints);
+                    points.setRemainingLimit(0);
+                    topUpRow = row;
+                    topUp = remainingPoints;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the chosen variant of an order, applying the loyalty points top-up if the order received it.
+     *
+     * @param row
+     *            Order to copy
+     *
+     * @return Fresh variant
+     */
+    private Variant toppedUp(Row row) {
+        Variant v = row.variants.get(row.chosen);
+        Map<String, Double> methods = new HashMap<>(v.methods);
+        if (row == topUpRow) {
+            for (Map.Entry<String, Double> entry : methods.entrySet()) {
+                entry.setValue(entry.getKey().equals(POINTS) ? entry.getValue() + topUp : entry.getValue() - topUp);
+            }
+        }
+        return new Variant(methods, v.discount, v.orderId);
+    }
+
+    private Assignment assignment(Row row) {
+        return Assignment.of(toppedUp(row));
+    }
+}
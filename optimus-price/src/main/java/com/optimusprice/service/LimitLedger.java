@@ -0,0 +1,237 @@
+package com.optimusprice.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
+
+import lombok.Getter;
+
+/**
+ * Lock-free balances of a wallet shared by concurrent solves. Every method's available amount is held in integer cents
+ * in an {@link AtomicLongArray} and changed only by compare-and-set, so no amount is ever lost to a racing
+ * read-modify-write and no thread blocks another.
+ * <p>
+ * A solve works on a {@link #snapshot()} of the balances and then {@link #reserve(Map) reserves} the amounts its
+ * assignment spends. A reservation either takes every amount or none: if a method no longer covers its amount, the
+ * amounts already taken are put back and the solve is expected to re-solve against a fresh snapshot. A reservation is
+ * then {@link Reservation#commit() committed} when the payment goes through, or {@link Reservation#release() released}
+ * to return its amounts.
+ */
+public class LimitLedger {
+    private static final long CENTS = 100;
+    private static final double FEASIBILITY_TOLERANCE = 1e-6; // Relative overshoot the solvers accept on a limit
+    private static final double MAX_TOLERANCE = 0.001; // Keeps the tolerance under a cent on large amounts
+
+    private final String[] ids;
+    private final double[] discount;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final AtomicLongArray available; // Cents neither reserved nor committed, indexed by method
+    private final AtomicLongArray committed; // Cents committed, indexed by method
+
+    /**
+     * Amounts held for one solve until they are committed or released.
+     */
+    public final class Reservation {
+        @Getter
+        private final SolveResult result; // Solve the amounts were reserved for, null if reserved directly
+        private final long[] cents;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(SolveResult result, long[] cents) {
+            this.result = result;
+            this.cents = cents;
+        }
+
+        /**
+         * Makes the reserved amounts permanently spent. Does nothing if the reservation is already settled.
+         *
+         * @return True if this call settled the reservation
+         */
+        public boolean commit() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+            for (int m = 0; m < cents.length; m++) {
+                if (cents[m] != 0) {
+                    committed.addAndGet(m, cents[m]);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the reserved amounts to the available balances. Does nothing if the reservation is already settled.
+         *
+         * @return True if this call settled the reservation
+         */
+        public boolean release() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+            for (int m = 0; m < cents.length; m++) {
+                if (cents[m] != 0) {
+                    available.addAndGet(m, cents[m]);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Opens a ledger on the remaining limits of a wallet, rounded down to whole cents.
+     *
+     * @param paymentMethods
+     *            Payment methods, keyed by ID; left untouched
+     */
+    public LimitLedger(Map<String, PaymentMethod> paymentMethods) {
+        int size = paymentMethods.size();
+        ids = new String[size];
+        discount = new double[size];
+        available = new AtomicLongArray(size);
+        committed = new AtomicLongArray(size);
+
+        int m = 0;
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            ids[m] = entry.getKey();
+            discount[m] = entry.getValue().getDiscount();
+            available.set(m, Math.max(0, (long) Math.floor(entry.getValue().getRemainingLimit() * CENTS + 1e-6)));
+            index.put(ids[m], m);
+            m++;
+        }
+    }
+
+    /**
+     * Copies the available balances into a fresh wallet to solve against.
+     *
+     * @return Payment methods whose limit is the amount currently available
+     */
+    public Map<String, PaymentMethod> snapshot() {
+        Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+        for (int m = 0; m < ids.length; m++) {
+            wallet.put(ids[m], new PaymentMethod(ids[m], discount[m], (double) available.get(m) / CENTS));
+        }
+        return wallet;
+    }
+
+    /**
+     * Reserves the amounts a solve spends, all or nothing.
+     *
+     * @param result
+     *            Result solved against a {@link #snapshot()} of this ledger
+     *
+     * @return Reservation, or null if some method no longer covers its amount
+     */
+    public Reservation reserve(SolveResult result) {
+        return reserve(result, result.getSpent());
+    }
+
+    /**
+     * Reserves amounts per method, all or nothing. Amounts are rounded up to whole cents, except that an amount within
+     * the solvers' feasibility tolerance above a whole cent counts as that cent, so a solve that exhausts a limit
+     * exactly can still reserve it.
+     *
+     * @param amounts
+     *            Amount per method ID
+     *
+     * @return Reservation, or null if some method no longer covers its amount
+     */
+    public Reservation reserve(Map<String, Double> amounts) {
+        return reserve(null, amounts);
+    }
+
+    private Reservation reserve(SolveResult result, Map<String, Double> amounts) {
+        long[] cents = new long[ids.length];
+        for (Map.Entry<String, Double> entry : amounts.entrySet()) {
+            Integer m = index.get(entry.getKey());
+            if (m == null) {
+                throw new IllegalArgumentException("Unknown payment method: " + entry.getKey());
+            }
+            cents[m] += toCents(entry.getValue());
+        }
+
+        for (int m = 0; m < cents.length; m++) {
+            if (cents[m] != 0 && !take(m, cents[m])) {
+                for (int k = 0; k < m; k++) {
+                    if (cents[k] != 0) {
+                        available.addAndGet(k, cents[k]);
+                    }
+                }
+                return null;
+            }
+        }
+        return new Reservation(result, cents);
+    }
+
+    /**
+     * Converts an amount spent to the cents to reserve for it.
+     *
+     * @param amount
+     *            Amount as reported by a solver, possibly over a whole cent by up to the relative feasibility
+     *            tolerance, capped at a tenth of a cent
+     *
+     * @return Non-negative amount in cents, never less than the amount itself minus the tolerance
+     */
+    static long toCents(double amount) {
+        double tolerance = Math.min(MAX_TOLERANCE, FEASIBILITY_TOLERANCE * Math.max(1, Math.abs(amount)));
+        return Math.max(0, (long) Math.ceil((amount - tolerance) * CENTS));
+    }
+
+    /**
+     * Takes an amount from one method's balance if it is covered.
+     *
+     * @param m
+     *            Method index
+     * @param cents
+     *            Amount in cents
+     *
+     * @return True if the amount was taken
+     */
+    private boolean take(int m, long cents) {
+        while (true) {
+            long current = available.get(m);
+            if (current < cents) {
+                return false;
+            }
+            if (available.compareAndSet(m, current, current - cents)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of a method neither reserved nor committed.
+     *
+     * @param id
+     *            Method ID
+     *
+     * @return Available amount
+     */
+    public double getAvailable(String id) {
+        return (double) available.get(indexOf(id)) / CENTS;
+    }
+
+    /**
+     * Returns the amount of a method committed so far.
+     *
+     * @param id
+     *            Method ID
+     *
+     * @return Committed amount
+     */
+    public double getCommitted(String id) {
+        return (double) committed.get(indexOf(id)) / CENTS;
+    }
+
+    private int indexOf(String id) {
+        Integer m = index.get(id);
+        if (m == null) {
+            throw new IllegalArgumentException("Unknown payment method: " + id);
+        }
+        return m;
+    }
+}
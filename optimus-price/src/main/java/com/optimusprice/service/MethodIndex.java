@@ -0,0 +1,99 @@
+package com.optimusprice.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.optimusprice.model.PaymentMethod;
+
+/**
+ * Interns the payment methods of a wallet to dense int IDs, in the wallet's iteration order, and keeps their limits and
+ * discounts in primitive arrays for the hot path. The IDs are also kept sorted by limit, so the methods able to cover
+ * an amount are found by binary search instead of a scan of the wallet.
+ */
+final class MethodIndex {
+    static final String POINTS = "PUNKTY";
+
+    final String[] ids; // Method ID by dense ID
+    final double[] limit; // Limit by dense ID
+    final double[] discount; // Discount percentage by dense ID
+    final int points; // Dense ID of the loyalty points, or -1 if the wallet has none
+    final int[] byLimit; // Dense IDs by descending limit
+    private final double[] sortedLimit; // Limits by descending value, parallel to byLimit
+    private final Map<String, Integer> index;
+
+    /**
+     * Indexes a wallet.
+     *
+     * @param paymentMethods
+     *            Payment methods, keyed by ID
+     */
+    MethodIndex(Map<String, PaymentMethod> paymentMethods) {
+        int size = paymentMethods.size();
+        ids = new String[size];
+        limit = new double[size];
+        discount = new double[size];
+        index = new HashMap<>(size * 2);
+
+        int m = 0;
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            ids[m] = entry.getKey();
+            limit[m] = entry.getValue().getLimit();
+            discount[m] = entry.getValue().getDiscount();
+            index.put(entry.getKey(), m);
+            m++;
+        }
+        points = idOf(POINTS);
+
+        byLimit = new int[size];
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(limit[b], limit[a]));
+        sortedLimit = new double[size];
+        for (int i = 0; i < size; i++) {
+            byLimit[i] = sorted[i];
+            sortedLimit[i] = limit[sorted[i]];
+        }
+    }
+
+    /**
+     * Counts the methods whose limit covers an amount; they are the first ones of {@link #byLimit}.
+     *
+     * @param amount
+     *            Amount to cover
+     *
+     * @return Number of methods with a limit of at least the amount
+     */
+    int fitting(double amount) {
+        int lo = 0;
+        int hi = sortedLimit.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedLimit[mid] >= amount) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Looks up the dense ID of a method.
+     *
+     * @param id
+     *            Method ID
+     *
+     * @return Dense ID, or -1 if the wallet has no such method
+     */
+    int idOf(String id) {
+        Integer m = index.get(id);
+        return m != null ? m : -1;
+    }
+
+    int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,42 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.optimusprice.model.Order;
+
+/**
+ * Groups interchangeable orders. Variants depend only on an order's value and on the set of its promotions, so orders
+ * that agree on both can be modelled together as one row with a multiplicity.
+ */
+final class OrderAggregator {
+
+    private OrderAggregator() {
+    }
+
+    /**
+     * Groups orders by value and promotion set.
+     *
+     * @param orders
+     *            Orders to group
+     *
+     * @return Order indexes of every group, ascending within a group and ordered by their first order
+     */
+    static List<int[]> group(List<Order> orders) {
+        Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            Set<String> promos = order.getPromotions() != null ? Set.copyOf(order.getPromotions()) : Set.of();
+            groups.computeIfAbsent(List.of(order.getValue(), promos), k -> new ArrayList<>()).add(i);
+        }
+
+        List<int[]> result = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            result.add(group.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return result;
+    }
+}
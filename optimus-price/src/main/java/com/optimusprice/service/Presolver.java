@@ -0,0 +1,58 @@
+package com.optimusprice.service;
+
+/**
+ * Fixes orders that do not need the solver. A payment method's limit can only bind if the worst-case demand of all
+ * orders on it exceeds the limit (see {@link ProblemDecomposer#worstCaseDemand}). An order whose variants only use
+ * methods that cannot bind competes with no other order, so its highest-discount variant is optimal whatever the others
+ * choose, and it can be fixed before the model is built. Only the remaining, truly coupled orders go to the solver; on
+ * wallets with large limits that is often none of them.
+ */
+final class Presolver {
+
+    private Presolver() {
+    }
+
+    /**
+     * Chooses the variant of every order that does not touch a binding method.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return Fixed variant index in the table of every order, or -1 for orders left to the solver (including orders
+     *         without any variant, so that the solver still reports them as infeasible)
+     */
+    static int[] fix(VariantTable table) {
+        double[] demand = ProblemDecomposer.worstCaseDemand(table);
+        double[] limit = table.methods.limit;
+        boolean[] binding = new boolean[limit.length];
+        for (int m = 0; m < limit.length; m++) {
+            binding[m] = demand[m] > limit[m];
+        }
+
+        int[] fixed = new int[table.orderCount()];
+        for (int i = 0; i < fixed.length; i++) {
+            fixed[i] = touchesBinding(table, i, binding) ? -1 : bestVariant(table, i);
+        }
+        return fixed;
+    }
+
+    private static boolean touchesBinding(VariantTable table, int order, boolean[] binding) {
+        for (int e = table.entryStart[table.orderStart[order]]; e < table.entryStart[table.orderStart[order
+                + 1]]; e++) {
+            if (binding[table.methodId[e]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int bestVariant(VariantTable table, int order) {
+        int best = -1;
+        for (int v = table.orderStart[order]; v < table.orderStart[order + 1]; v++) {
+            if (best < 0 || table.discount[v] > table.discount[best]) {
+                best = v;
+            }
+        }
+        return best;
+    }
+}
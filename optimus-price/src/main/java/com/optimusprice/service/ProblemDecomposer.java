@@ -0,0 +1,114 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a problem into independent sub-problems. Two orders only interact through the limit of a payment method that
+ * both of them may pay with, and only if that limit can actually bind, i.e. the worst-case demand of all orders on the
+ * method exceeds its limit. Orders connected through binding methods form a component; different components can be
+ * solved separately and their solutions simply merged.
+ */
+final class ProblemDecomposer {
+
+    private ProblemDecomposer() {
+    }
+
+    /**
+     * Groups orders into independent components.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return Order indexes of every component, ascending within a component and ordered by their first order
+     */
+    static List<int[]> components(VariantTable table) {
+        double[] demand = worstCaseDemand(table);
+        double[] limit = table.methods.limit;
+
+        int[] parent = new int[table.orderCount()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        int[] firstUser = new int[limit.length];
+        Arrays.fill(firstUser, -1);
+        for (int i = 0; i < parent.length; i++) {
+            for (int e = table.entryStart[table.orderStart[i]]; e < table.entryStart[table.orderStart[i + 1]]; e++) {
+                int m = table.methodId[e];
+                if (demand[m] <= limit[m]) {
+                    continue;
+                }
+                if (firstUser[m] < 0) {
+                    firstUser[m] = i;
+                } else {
+                    union(parent, firstUser[m], i);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < parent.length; i++) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+        }
+
+        List<int[]> components = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            components.add(group.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return components;
+    }
+
+    /**
+     * Computes, for every payment method, the largest amount all orders together could ever place on it, assuming each
+     * order picks its most demanding variant for that method.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return Worst-case total demand, indexed by method ID
+     */
+    static double[] worstCaseDemand(VariantTable table) {
+        int methods = table.methods.size();
+        double[] demand = new double[methods];
+        double[] orderMax = new double[methods];
+        int[] touched = new int[methods];
+
+        for (int i = 0; i < table.orderCount(); i++) {
+            int n = 0;
+            for (int e = table.entryStart[table.orderStart[i]]; e < table.entryStart[table.orderStart[i + 1]]; e++) {
+                int m = table.methodId[e];
+                if (table.amount[e] > orderMax[m]) {
+                    if (orderMax[m] == 0) {
+                        touched[n++] = m;
+                    }
+                    orderMax[m] = table.amount[e];
+                }
+            }
+            for (int t = 0; t < n; t++) {
+                demand[touched[t]] += orderMax[touched[t]];
+                orderMax[touched[t]] = 0;
+            }
+        }
+        return demand;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra != rb) {
+            parent[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.optimusprice.exception.NoOptimalSolutionException;
+import com.optimusprice.io.AssignmentSink;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.Variant;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.Value;
+
+/**
+ * Solves batches too large for one model as a sequence of chunks of consecutive orders, so that model size, memory and
+ * solve time are bounded by the chunk size rather than by the batch. Every chunk starts from the limits the previous
+ * chunks left over.
+ * <p>
+ * Solving chunks greedily in sequence would let the first chunks exhaust the scarce methods. A method is scarce when
+ * the orders' best-case demand on it (every order taking its highest-discount variant) exceeds its remaining limit;
+ * such a method is budgeted across the chunks in proportion to their best-case demand, and whatever a chunk leaves of
+ * its budget rolls over to the following ones. A chunk whose orders cannot all be paid within their budgets is
+ * re-solved against the full remaining limits. The result is a feasible, generally suboptimal solution;
+ * {@link #compare} measures the loss against the full model on instances small enough to solve in one piece.
+ */
+@Getter
+@Setter
+public class RollingHorizonSolver {
+    private static final double EPS = 1e-9;
+
+    @Setter(AccessLevel.NONE)
+    private Map<String, PaymentMethod> paymentMethods;
+    @Setter(AccessLevel.NONE)
+    private int chunkSize;
+    private Backend backend = Backend.SCIP; // Solver backend of every chunk, AUTO to choose per chunk
+    private AssignmentSink assignmentSink; // Receives the final split of every order after solve(), null to discard
+    @Setter(AccessLevel.NONE)
+    private double objective; // Total discount of the last solve
+    @Setter(AccessLevel.NONE)
+    private int chunks; // Number of chunks of the last solve
+    @Setter(AccessLevel.NONE)
+    private int fallbacks; // Chunks of the last solve that had to be re-solved without budgets
+
+    /**
+     * Objective of the chunked solve next to the one of the full model.
+     */
+    @Value
+    public static class Comparison {
+        double fullObjective; // Total discount of the full model
+        double chunkedObjective; // Total discount of the chunked solve
+        int chunks; // Number of chunks
+
+        /**
+         * Returns the discount lost by solving in chunks.
+         *
+         * @return Full minus chunked objective
+         */
+        public double getLoss() {
+            return fullObjective - chunkedObjective;
+        }
+
+        /**
+         * Returns the discount lost by solving in chunks relative to the full model.
+         *
+         * @return Loss as a fraction of the full objective, 0 if the full objective is 0
+         */
+        public double getRelativeLoss() {
+            return fullObjective > 0 ? getLoss() / fullObjective : 0;
+        }
+    }
+
+    /**
+     * Creates a solver for a wallet.
+     *
+     * @param paymentMethods
+     *            Payment methods whose remaining limits are updated by the solve
+     * @param chunkSize
+     *            Maximum number of orders per chunk
+     */
+    public RollingHorizonSolver(Map<String, PaymentMethod> paymentMethods, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.paymentMethods = paymentMethods;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Solves the orders chunk by chunk, then distributes the loyalty points left over across the whole batch as
+     * {@link SolverService#solve()} does.
+     *
+     * @param orders
+     *            Orders to pay for
+     *
+     * @return Map of updated payment methods after solving
+     */
+    public Map<String, PaymentMethod> solve(List<Order> orders) {
+        objective = 0;
+        chunks = (orders.size() + chunkSize - 1) / chunkSize;
+        fallbacks = 0;
+        if (chunks == 0) {
+            return paymentMethods;
+        }
+
+        String[] ids = paymentMethods.keySet().toArray(new String[0]);
+        double[][] demand = bestCaseDemand(orders, ids);
+        double[] later = new double[ids.length]; // Best-case demand of the current and all following chunks
+        for (double[] chunkDemand : demand) {
+            for (int m = 0; m < ids.length; m++) {
+                later[m] += chunkDemand[m];
+            }
+        }
+
+        SolverService ledger = new SolverService(List.of(), paymentMethods);
+        List<Variant> selected = new ArrayList<>(orders.size());
+        for (int c = 0; c < chunks; c++) {
+            List<Order> chunk = chunkOf(orders, c);
+            Map<String, PaymentMethod> budgets = new LinkedHashMap<>();
+            for (int m = 0; m < ids.length; m++) {
+                PaymentMethod pm = paymentMethods.get(ids[m]);
+                double remaining = Math.max(0, pm.getRemainingLimit());
+                double budget = later[m] > remaining + EPS ? remaining * demand[c][m] / later[m] : remaining;
+                budgets.put(ids[m], new PaymentMethod(ids[m], pm.getDiscount(), budget));
+                later[m] -= demand[c][m];
+            }
+
+            List<Variant> chunkSelection;
+            try {
+                chunkSelection = selectChunk(chunk, budgets);
+            } catch (NoOptimalSolutionException e) {
+                fallbacks++;
+                chunkSelection = selectChunk(chunk, remainingOf(paymentMethods));
+            }
+            ledger.deductLimits(chunkSelection);
+            for (Variant v : chunkSelection) {
+                objective += v.discount;
+            }
+            selected.addAll(chunkSelection);
+        }
+
+        ledger.distributePoints(selected);
+        if (assignmentSink != null) {
+            for (Variant v : selected) {
+                assignmentSink.accept(v.orderId, v.methods, v.discount);
+            }
+        }
+        return paymentMethods;
+    }
+
+    /**
+     * Solves the orders both as one model and in chunks, on copies of the wallet, and reports both objectives.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods, keyed by ID; left untouched
+     * @param chunkSize
+     *            Maximum number of orders per chunk
+     *
+     * @return Objectives of the full model and of the chunked solve
+     */
+    public static Comparison compare(List<Order> orders, Map<String, PaymentMethod> paymentMethods, int chunkSize) {
+        SolverService full = new SolverService(orders, SolverEngine.copyOf(paymentMethods));
+        double fullObjective = 0;
+        if (!orders.isEmpty()) {
+            for (Variant v : full.select(full.generateTable())) {
+                fullObjective += v.discount;
+            }
+            full.finishTrace();
+        }
+
+        RollingHorizonSolver chunked = new RollingHorizonSolver(SolverEngine.copyOf(paymentMethods), chunkSize);
+        chunked.solve(orders);
+        return new Comparison(fullObjective, chunked.getObjective(), chunked.getChunks());
+    }
+
+    /**
+     * Selects the variants of one chunk within the given limits.
+     *
+     * @param chunk
+     *            Orders of the chunk
+     * @param limits
+     *            Payment methods whose limits bound the chunk
+     *
+     * @return Selected variants, in order
+     */
+    private List<Variant> selectChunk(List<Order> chunk, Map<String, PaymentMethod> limits) {
+        SolverService service = new SolverService(chunk, limits);
+        service.setBackend(backend);
+        try {
+            return service.select(service.generateTable());
+        } finally {
+            service.finishTrace();
+        }
+    }
+
+    /**
+     * Computes, for every chunk, how much its orders would place on every method if each took its highest-discount
+     * variant under the current remaining limits. The variants are generated one chunk at a time and dropped again.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param ids
+     *            Method IDs, in wallet order
+     *
+     * @return Best-case demand, indexed by chunk and method
+     */
+    private double[][] bestCaseDemand(List<Order> orders, String[] ids) {
+        double[][] demand = new double[chunks][ids.length];
+        SolverService generator = new SolverService(List.of(), remainingOf(paymentMethods));
+        for (int c = 0; c < chunks; c++) {
+            VariantTable table = generator.generateTable(chunkOf(orders, c).iterator());
+            for (int i = 0; i < table.orderCount(); i++) {
+                int best = -1;
+                for (int v = table.orderStart[i]; v < table.orderStart[i + 1]; v++) {
+                    if (best < 0 || table.discount[v] > table.discount[best]) {
+                        best = v;
+                    }
+                }
+                if (best < 0) {
+                    continue;
+                }
+                for (int e = table.entryStart[best]; e < table.entryStart[best + 1]; e++) {
+                    demand[c][table.methodId[e]] += table.amount[e];
+                }
+            }
+        }
+        return demand;
+    }
+
+    private List<Order> chunkOf(List<Order> orders, int c) {
+        return orders.subList(c * chunkSize, Math.min(orders.size(), (c + 1) * chunkSize));
+    }
+
+    /**
+     * Copies payment methods with their remaining limit as the limit.
+     *
+     * @param paymentMethods
+     *            Payment methods to copy
+     *
+     * @return Fresh payment methods limited to what is left
+     */
+    private static Map<String, PaymentMethod> remainingOf(Map<String, PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            PaymentMethod pm = entry.getValue();
+            copy.put(entry.getKey(),
+                    new PaymentMethod(pm.getId(), pm.getDiscount(), Math.max(0, pm.getRemainingLimit())));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,18 @@
+package com.optimusprice.service;
+
+import java.util.List;
+
+import com.optimusprice.model.Variant;
+
+import lombok.Value;
+
+@Value
+/**
+ * Variants chosen by one solver run together with the quality of that choice.
+ */
+class Selection {
+    List<Variant> variants; // Chosen variant of every order, in order index order
+    double objective; // Total discount of the chosen variants
+    double bestBound; // Proven upper bound on the total discount
+    boolean optimal; // Whether the choice is proven optimal
+}
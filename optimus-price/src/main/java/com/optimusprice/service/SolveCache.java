@@ -0,0 +1,225 @@
+package com.optimusprice.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import com.optimusprice.model.Assignment;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
+
+/**
+ * Bounded LRU cache of solve results, keyed by a canonical hash of the problem: the orders' values and sorted
+ * promotions (their IDs and their order in the list do not matter) and the payment methods' IDs, discounts and limits.
+ * Results are stored immutable and in canonical order, and on a hit they are mapped back onto the IDs and positions of
+ * the requesting orders, so a repeated basket is answered without touching OR-Tools. Safe for concurrent use.
+ */
+public class SolveCache {
+    private final int maxEntries;
+    private final Map<String, SolveResult> entries; // Canonical hash -> result with assignments in canonical order
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries
+     *            Maximum number of results kept; the least recently used one is evicted beyond that
+     */
+    public SolveCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SolveResult> eldest) {
+                return size() > SolveCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of a problem or solves and caches it.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods
+     * @param solver
+     *            Solves the problem on a miss, e.g. {@link SolverEngine#solve(List, Map)}
+     *
+     * @return Immutable result, with assignments in the order and with the IDs of the given orders
+     */
+    public SolveResult solve(List<Order> orders, Map<String, PaymentMethod> paymentMethods,
+            BiFunction<List<Order>, Map<String, PaymentMethod>, SolveResult> solver) {
+        Key key = keyOf(orders, paymentMethods);
+        SolveResult cached = get(key, orders);
+        if (cached != null) {
+            return cached;
+        }
+        SolveResult result = solver.apply(orders, paymentMethods);
+        put(key, result);
+        return result;
+    }
+
+    /**
+     * Computes the canonical key of a problem.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods
+     *
+     * @return Key to look the problem up with
+     */
+    public Key keyOf(List<Order> orders, Map<String, PaymentMethod> paymentMethods) {
+        String[] canonical = new String[orders.size()];
+        Integer[] perm = new Integer[orders.size()];
+        for (int i = 0; i < canonical.length; i++) {
+            Order order = orders.get(i);
+            List<String> promotions = new ArrayList<>(
+                    order.getPromotions() != null ? order.getPromotions() : List.of());
+            promotions.sort(null);
+            canonical[i] = Double.toString(order.getValue()) + '\u0000' + String.join("\u0001", promotions);
+            perm[i] = i;
+        }
+        Arrays.sort(perm, Comparator.comparing(i -> canonical[i]));
+
+        List<PaymentMethod> methods = new ArrayList<>(paymentMethods.values());
+        methods.sort(Comparator.comparing(PaymentMethod::getId));
+
+        MessageDigest digest = sha256();
+        ByteBuffer numbers = ByteBuffer.allocate(2 * Double.BYTES);
+        for (PaymentMethod pm : methods) {
+            digest.update(pm.getId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(numbers.clear().putDouble(pm.getDiscount()).putDouble(pm.getLimit()).array());
+        }
+        digest.update((byte) 0);
+        for (Integer i : perm) {
+            digest.update(canonical[i].getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return new Key(HexFormat.of().formatHex(digest.digest()), Arrays.stream(perm).mapToInt(i -> i).toArray());
+    }
+
+    /**
+     * Looks a problem up and counts a hit or a miss.
+     *
+     * @param key
+     *            Key of the problem
+     * @param orders
+     *            Orders the key was computed from
+     *
+     * @return Cached result mapped onto the given orders, or null on a miss
+     */
+    public SolveResult get(Key key, List<Order> orders) {
+        SolveResult stored;
+        synchronized (entries) {
+            stored = entries.get(key.hash);
+        }
+        if (stored == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+
+        Assignment[] mapped = new Assignment[stored.getAssignments().size()];
+        for (int k = 0; k < mapped.length; k++) {
+            int i = key.permutation[k];
+            Assignment a = stored.getAssignments().get(k);
+            mapped[i] = new Assignment(orders.get(i).getId(), a.getPayments(), a.getDiscount());
+        }
+        return new SolveResult(List.of(mapped), stored.getSpent(), stored.getTotalDiscount(), stored.getBestBound(),
+                stored.isOptimal());
+    }
+
+    /**
+     * Stores the result of a problem.
+     *
+     * @param key
+     *            Key of the problem
+     * @param result
+     *            Result whose assignments are in the order of the orders the key was computed from
+     */
+    public void put(Key key, SolveResult result) {
+        List<Assignment> canonical = new ArrayList<>(key.permutation.length);
+        for (int i : key.permutation) {
+            canonical.add(result.getAssignments().get(i));
+        }
+        SolveResult stored = new SolveResult(List.copyOf(canonical), result.getSpent(), result.getTotalDiscount(),
+                result.getBestBound(), result.isOptimal());
+        synchronized (entries) {
+            entries.put(key.hash, stored);
+        }
+    }
+
+    /**
+     * Number of lookups answered from the cache.
+     *
+     * @return Hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of lookups that had to be solved.
+     *
+     * @return Miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of results currently cached.
+     *
+     * @return Entry count
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Canonical hash of a problem together with the permutation that sorts its orders into canonical order.
+     */
+    public static final class Key {
+        private final String hash; // Hex SHA-256 of the canonical problem
+        private final int[] permutation; // Canonical position -> index in the original order list
+
+        private Key(String hash, int[] permutation) {
+            this.hash = hash;
+            this.permutation = permutation;
+        }
+
+        /**
+         * Returns the canonical hash.
+         *
+         * @return Hex SHA-256 of the canonical problem
+         */
+        public String getHash() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.optimusprice.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ortools.linearsolver.MPSolver;
+
+import com.optimusprice.metrics.SolveMetrics;
+import com.optimusprice.model.Assignment;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.Problem;
+import com.optimusprice.model.SolveSnapshot;
+
+/**
+ * Saves solves that take longer than a threshold, so that pathological instances can be replayed and profiled offline
+ * (see {@code App --replay}). A snapshot is three files sharing a name in the snapshot directory: {@code .json} holds
+ * the orders and the wallet as they were before the solve, with the backend and timing ({@link SolveSnapshot});
+ * {@code .mps} holds the full model, before presolve, in MPS format for any MIP solver; {@code .variants.jsonl} tells
+ * what every column of that model stands for, one {@link Assignment} per line in column order.
+ * <p>
+ * The model is rebuilt from the snapshot input after the slow solve has finished, so solves under the threshold pay
+ * nothing but a copy of the wallet. Slow solves are written by {@link #recordLater} on a background thread shared by
+ * all recorders, so the caller gets its result without waiting for the files; pending writes are finished before the
+ * JVM exits.
+ */
+public class SolveRecorder {
+    static final String DIRECTORY_PROPERTY = "optimus.snapshotDir"; // Enables recording from the command line
+    static final String THRESHOLD_PROPERTY = "optimus.snapshotMillis"; // Threshold, DEFAULT_THRESHOLD_MILLIS if unset
+    static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger(); // Keeps names unique within the JVM
+    private static final long DRAIN_SECONDS = 60; // Time the JVM waits at exit for pending writes
+    private static final ExecutorService WRITER = newWriter(); // Writes snapshots in submission order
+
+    private final Path directory;
+    private final long thresholdNanos;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Creates a recorder.
+     *
+     * @param directory
+     *            Directory to write snapshots to, created if missing
+     * @param thresholdMillis
+     *            Solves taking longer than this many milliseconds are saved
+     */
+    public SolveRecorder(Path directory, long thresholdMillis) {
+        this.directory = directory;
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+    }
+
+    private static ExecutorService newWriter() {
+        ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "solve-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "solve-recorder-drain"));
+        return writer;
+    }
+
+    /**
+     * Creates a recorder from the {@code optimus.snapshotDir} and {@code optimus.snapshotMillis} system properties.
+     *
+     * @return Recorder, or null if no snapshot directory is configured
+     */
+    public static SolveRecorder fromSystemProperties() {
+        String dir = System.getProperty(DIRECTORY_PROPERTY);
+        if (dir == null) {
+            return null;
+        }
+        return new SolveRecorder(Path.of(dir),
+                Long.parseLong(System.getProperty(THRESHOLD_PROPERTY, String.valueOf(DEFAULT_THRESHOLD_MILLIS))));
+    }
+
+    /**
+     * Checks whether a solve went over the threshold.
+     *
+     * @param metrics
+     *            Measurements of the finished solve
+     *
+     * @return True if the solve should be saved
+     */
+    boolean isSlow(SolveMetrics metrics) {
+        return metrics != null && metrics.getTotalNanos() > thresholdNanos;
+    }
+
+    /**
+     * Copies a wallet as it is before a solve, including what is left of every limit.
+     *
+     * @param paymentMethods
+     *            Payment methods, keyed by ID
+     *
+     * @return Independent copy in the same order
+     */
+    static Map<String, PaymentMethod> copyOf(Map<String, PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            PaymentMethod pm = entry.getValue();
+            copy.put(entry.getKey(),
+                    new PaymentMethod(pm.getId(), pm.getDiscount(), pm.getLimit(), pm.getRemainingLimit()));
+        }
+        return copy;
+    }
+
+    /**
+     * Writes the snapshot of a solve on the background thread. The arguments must not change afterwards. A snapshot
+     * that cannot be written is reported on standard error.
+     *
+     * @param orders
+     *            Orders of the solve
+     * @param paymentMethods
+     *            Wallet as it was before the solve
+     * @param backend
+     *            Backend the solve was configured with
+     * @param metrics
+     *            Measurements of the solve
+     *
+     * @return Path of the snapshot's {@code .json} file once written, or null if writing failed
+     */
+    public Future<Path> recordLater(List<Order> orders, Map<String, PaymentMethod> paymentMethods, Backend backend,
+            SolveMetrics metrics) {
+        return WRITER.submit(() -> {
+            try {
+                return record(orders, paymentMethods, backend, metrics);
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Waits until every snapshot queued so far by {@link #recordLater} has been written or has failed.
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     */
+    public static void awaitWrites() throws InterruptedException {
+        try {
+            WRITER.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Writes the snapshot of a solve.
+     *
+     * @param orders
+     *            Orders of the solve
+     * @param paymentMethods
+     *            Wallet as it was before the solve
+     * @param backend
+     *            Backend the solve was configured with
+     * @param metrics
+     *            Measurements of the solve
+     *
+     * @return Path of the snapshot's {@code .json} file
+     *
+     * @throws IOException
+     *             If a file cannot be written
+     */
+    public Path record(List<Order> orders, Map<String, PaymentMethod> paymentMethods, Backend backend,
+            SolveMetrics metrics) throws IOException {
+        Files.createDirectories(directory);
+        String name = "solve-" + System.currentTimeMillis() + "-" + SEQUENCE.incrementAndGet();
+
+        Problem problem = new Problem(name, orders, new ArrayList<>(paymentMethods.values()));
+        Path snapshot = directory.resolve(name + ".json");
+        objectMapper.writeValue(snapshot.toFile(), new SolveSnapshot(problem, backend.name(),
+                metrics.getTotalNanos() / 1e6, metrics.getStatus(), metrics.getObjective(), metrics.getVariables()));
+
+        SolverService service = new SolverService(orders, copyOf(paymentMethods));
+        VariantTable table = service.generateTable();
+        SolverEngine.loadNativeLibraries();
+        MPSolver solver = MPSolver.createSolver(Backend.SCIP.getSolverId());
+        try {
+            service.buildModel(solver, table, null);
+            Files.writeString(directory.resolve(name + ".mps"), solver.exportModelAsMpsFormat(),
+                    StandardCharsets.UTF_8);
+        } finally {
+            solver.delete();
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(name + ".variants.jsonl"))) {
+            for (int i = 0; i < table.orderCount(); i++) {
+                for (int v = table.orderStart[i]; v < table.orderStart[i + 1]; v++) {
+                    out.write(objectMapper.writeValueAsString(Assignment.of(table.toVariant(v, table.orderIds[i]))));
+                    out.newLine();
+                }
+            }
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,443 @@
+package com.optimusprice.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.google.ortools.Loader;
+import com.google.ortools.linearsolver.MPSolver;
+
+import com.optimusprice.exception.LimitConflictException;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.Problem;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.model.Variant;
+
+/**
+ * Long-lived entry point for serving many independent solves from one JVM. Native libraries are loaded once and solver
+ * instances are kept in a pool, cleared after every call and handed to the next one. Inputs are never mutated: every
+ * call works on its own copy of the payment methods and returns an immutable {@link SolveResult}.
+ */
+public class SolverEngine implements AutoCloseable {
+    private static final int RESERVE_ATTEMPTS = 16; // Re-solves of solveReserved before giving up on a contended wallet
+    private static volatile boolean nativeLoaded;
+
+    private final String solverId;
+    private final BlockingQueue<MPSolver> idle;
+    private final ForkJoinPool workers;
+
+    /**
+     * Creates an engine backed by SCIP with one pooled solver per available core.
+     */
+    public SolverEngine() {
+        this("SCIP", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param solverId
+     *            OR-Tools solver identifier passed to {@link MPSolver#createSolver(String)}
+     * @param poolSize
+     *            Maximum number of idle solvers kept for reuse, also used as the parallelism of decomposed solves
+     */
+    public SolverEngine(String solverId, int poolSize) {
+        loadNativeLibraries();
+        this.solverId = solverId;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.workers = new ForkJoinPool(Math.max(1, poolSize));
+    }
+
+    /**
+     * Loads the OR-Tools native libraries unless a previous call already did.
+     */
+    public static void loadNativeLibraries() {
+        if (!nativeLoaded) {
+            synchronized (SolverEngine.class) {
+                if (!nativeLoaded) {
+                    Loader.loadNativeLibraries();
+                    nativeLoaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves one problem on a pooled solver.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods; left untouched
+     *
+     * @return Immutable result of the solve
+     */
+    public SolveResult solve(List<Order> orders, Map<String, PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> wallet = copyOf(paymentMethods);
+        if (orders == null || orders.isEmpty()) {
+            return SolveResult.of(List.of(), wallet);
+        }
+
+        MPSolver solver = acquire();
+        try {
+            return solveOn(solver, orders, wallet);
+        } finally {
+            release(solver);
+        }
+    }
+
+    /**
+     * Solves one problem against the shared balances of a ledger and reserves the amounts the chosen assignment spends.
+     * If a concurrent solve took some of those amounts first, the problem is re-solved against the balances left, so
+     * solves on the same wallet run in parallel without a lock.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param ledger
+     *            Shared balances of the wallet
+     *
+     * @return Reservation holding the result; commit it once paid, or release it
+     *
+     * @throws LimitConflictException
+     *             If the amounts were taken by concurrent solves on every attempt
+     */
+    public LimitLedger.Reservation solveReserved(List<Order> orders, LimitLedger ledger) {
+        for (int attempt = 0; attempt < RESERVE_ATTEMPTS; attempt++) {
+            LimitLedger.Reservation reservation = ledger.reserve(solve(orders, ledger.snapshot()));
+            if (reservation != null) {
+                return reservation;
+            }
+        }
+        throw new LimitConflictException("Limits taken by concurrent solves " + RESERVE_ATTEMPTS + " times in a row.");
+    }
+
+    /**
+     * Solves a batch of independent problems. The batch is split into at most one chunk per pooled solver and every
+     * chunk is solved sequentially on a single warm solver, so many small problems share a handful of solvers instead
+     * of each paying for its own hand-off. A failing problem only fails its own future.
+     *
+     * @param problems
+     *            Problems to solve
+     *
+     * @return One future per problem, in input order
+     */
+    public List<CompletableFuture<SolveResult>> solveBatch(List<Problem> problems) {
+        List<CompletableFuture<SolveResult>> results = new ArrayList<>(problems.size());
+        for (int p = 0; p < problems.size(); p++) {
+            results.add(new CompletableFuture<>());
+        }
+
+        int chunks = Math.min(problems.size(), workers.getParallelism());
+        int chunkSize = chunks == 0 ? 0 : (problems.size() + chunks - 1) / chunks;
+        for (int from = 0; from < problems.size(); from += chunkSize) {
+            int to = Math.min(problems.size(), from + chunkSize);
+            List<Problem> chunk = problems.subList(from, to);
+            List<CompletableFuture<SolveResult>> chunkResults = results.subList(from, to);
+            workers.execute(() -> solveChunk(chunk, chunkResults));
+        }
+        return results;
+    }
+
+    /**
+     * Solves problems one after another on a single pooled solver.
+     *
+     * @param problems
+     *            Problems to solve
+     * @param results
+     *            Futures to complete, parallel to the problems
+     */
+    private void solveChunk(List<Problem> problems, List<CompletableFuture<SolveResult>> results) {
+        MPSolver solver = acquire();
+        try {
+            for (int p = 0; p < problems.size(); p++) {
+                Problem problem = problems.get(p);
+                try {
+                    results.get(p).complete(solveProblem(solver, problem));
+                } catch (RuntimeException e) {
+                    results.get(p).completeExceptionally(e);
+                } finally {
+                    solver.clear();
+                }
+            }
+        } finally {
+            release(solver);
+        }
+    }
+
+    /**
+     * Solves one self-contained problem on an empty solver, leaving the model in the solver for the caller to clear.
+     *
+     * @param solver
+     *            Empty solver to build the model on
+     * @param problem
+     *            Orders and payment methods; left untouched
+     *
+     * @return Immutable result of the solve
+     */
+    static SolveResult solveProblem(MPSolver solver, Problem problem) {
+        Map<String, PaymentMethod> wallet = walletOf(problem.getPaymentMethods());
+        if (problem.getOrders() == null || problem.getOrders().isEmpty()) {
+            return SolveResult.of(List.of(), wallet);
+        }
+        return solveOn(solver, problem.getOrders(), wallet);
+    }
+
+    /**
+     * Solves one non-empty problem on an empty solver.
+     *
+     * @param solver
+     *            Empty solver to build the model on
+     * @param orders
+     *            Orders to pay for
+     * @param wallet
+     *            Private copy of the payment methods, updated in place
+     *
+     * @return Immutable result of the solve
+     */
+    private static SolveResult solveOn(MPSolver solver, List<Order> orders, Map<String, PaymentMethod> wallet) {
+        SolverService service = new SolverService(orders, wallet);
+        try {
+            List<Variant> selected = service.solve(solver);
+            return SolveResult.of(selected, wallet);
+        } finally {
+            service.finishTrace();
+        }
+    }
+
+    /**
+     * Solves one problem within a wall-clock budget. A greedy assignment is passed to the solver as a warm-start hint
+     * and the best assignment found before the budget runs out is returned, together with the best bound and the
+     * resulting optimality gap. Easy instances still finish early with a proven optimal result.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods; left untouched
+     * @param budget
+     *            Wall-clock budget for the solver
+     *
+     * @return Immutable result of the solve
+     */
+    public SolveResult solveWithin(List<Order> orders, Map<String, PaymentMethod> paymentMethods, Duration budget) {
+        Map<String, PaymentMethod> wallet = copyOf(paymentMethods);
+        if (orders == null || orders.isEmpty()) {
+            return SolveResult.of(List.of(), wallet);
+        }
+
+        SolverService service = new SolverService(orders, wallet);
+        MPSolver solver = acquire();
+        try {
+            Selection selection = service.selectVariants(solver, service.generateTable(), null,
+                    Math.max(1, budget.toMillis()));
+            service.deductLimits(selection.getVariants());
+            service.distributePoints(selection.getVariants());
+            return SolveResult.of(selection.getVariants(), wallet, selection.getBestBound(), selection.isOptimal());
+        } finally {
+            release(solver);
+            service.finishTrace();
+        }
+    }
+
+    /**
+     * Solves one problem with identical orders aggregated into integer count variables. Gives the same discount as
+     * {@link #solve(List, Map)} with far fewer variables when many orders share their value and promotions.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods; left untouched
+     *
+     * @return Immutable result of the solve
+     */
+    public SolveResult solveAggregated(List<Order> orders, Map<String, PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> wallet = copyOf(paymentMethods);
+        if (orders == null || orders.isEmpty()) {
+            return SolveResult.of(List.of(), wallet);
+        }
+
+        SolverService service = new SolverService(orders, wallet);
+        MPSolver solver = acquire();
+        try {
+            List<Variant> selected = service.selectAggregated(solver);
+            service.deductLimits(selected);
+            service.distributePoints(selected);
+            return SolveResult.of(selected, wallet);
+        } finally {
+            release(solver);
+            service.finishTrace();
+        }
+    }
+
+    /**
+     * Solves one problem by splitting it into independent components (see {@link ProblemDecomposer}) and solving them
+     * in parallel, each on its own pooled solver. The merged selection is then charged against the wallet and loyalty
+     * points are distributed over all orders at once, exactly as in a single solve.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods; left untouched
+     *
+     * @return Immutable result of the solve
+     */
+    public SolveResult solveDecomposed(List<Order> orders, Map<String, PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> wallet = copyOf(paymentMethods);
+        if (orders == null || orders.isEmpty()) {
+            return SolveResult.of(List.of(), wallet);
+        }
+
+        SolverService service = new SolverService(orders, wallet);
+        try {
+            VariantTable table = service.generateTable();
+            List<int[]> components = ProblemDecomposer.components(table);
+
+            List<Callable<List<Variant>>> tasks = new ArrayList<>(components.size());
+            for (int[] component : components) {
+                VariantTable subTable = components.size() == 1 ? table : table.subset(component);
+                tasks.add(() -> select(service, subTable));
+            }
+
+            Variant[] byOrder = new Variant[orders.size()];
+            List<Future<List<Variant>>> futures = tasks.size() == 1 ? List.of(workers.submit(tasks.get(0)))
+                    : workers.invokeAll(tasks);
+            for (int k = 0; k < futures.size(); k++) {
+                List<Variant> chosen = await(futures.get(k));
+                int[] component = components.get(k);
+                for (int t = 0; t < component.length; t++) {
+                    byOrder[component[t]] = chosen.get(t);
+                }
+            }
+
+            List<Variant> selected = new ArrayList<>(Arrays.asList(byOrder));
+            service.deductLimits(selected);
+            service.distributePoints(selected);
+            return SolveResult.of(selected, wallet);
+        } finally {
+            service.finishTrace();
+        }
+    }
+
+    /**
+     * Selects variants for a sub-problem on a pooled solver.
+     *
+     * @param service
+     *            Service holding the wallet to respect
+     * @param table
+     *            Variants of the sub-problem's orders
+     *
+     * @return Selected variants, one per order
+     */
+    private List<Variant> select(SolverService service, VariantTable table) {
+        MPSolver solver = acquire();
+        try {
+            return service.selectVariants(solver, table);
+        } finally {
+            release(solver);
+        }
+    }
+
+    /**
+     * Waits for a component's solution, rethrowing solver failures unchanged.
+     *
+     * @param future
+     *            Pending component solve
+     *
+     * @return Selected variants of the component
+     */
+    private static List<Variant> await(Future<List<Variant>> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        }
+    }
+
+    /**
+     * Takes an idle solver from the pool or creates a new one if the pool is empty.
+     *
+     * @return Empty solver
+     */
+    MPSolver acquire() {
+        MPSolver solver = idle.poll();
+        return solver != null ? solver : MPSolver.createSolver(solverId);
+    }
+
+    /**
+     * Resets a solver and returns it to the pool, or frees it if the pool is already full.
+     *
+     * @param solver
+     *            Solver obtained from {@link #acquire()}
+     */
+    void release(MPSolver solver) {
+        solver.clear();
+        solver.setTimeLimit(0);
+        if (!idle.offer(solver)) {
+            solver.delete();
+        }
+    }
+
+    /**
+     * Stops the worker pool and frees all idle solvers.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        List<MPSolver> drained = new ArrayList<>();
+        idle.drainTo(drained);
+        for (MPSolver solver : drained) {
+            solver.delete();
+        }
+    }
+
+    /**
+     * Builds a private wallet from a list of payment methods, e.g. as deserialized from a request.
+     *
+     * @param paymentMethods
+     *            Payment methods, or null for an empty wallet
+     *
+     * @return Fresh payment methods keyed by ID, with remaining limit reset to the full limit
+     */
+    static Map<String, PaymentMethod> walletOf(List<PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+        if (paymentMethods != null) {
+            for (PaymentMethod pm : paymentMethods) {
+                wallet.put(pm.getId(), new PaymentMethod(pm.getId(), pm.getDiscount(), pm.getLimit()));
+            }
+        }
+        return wallet;
+    }
+
+    /**
+     * Copies payment methods so that a solve can update remaining limits without touching the caller's objects.
+     *
+     * @param paymentMethods
+     *            Payment methods to copy
+     *
+     * @return Fresh payment methods with remaining limit reset to the full limit
+     */
+    static Map<String, PaymentMethod> copyOf(Map<String, PaymentMethod> paymentMethods) {
+        Map<String, PaymentMethod> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            PaymentMethod pm = entry.getValue();
+            copy.put(entry.getKey(), new PaymentMethod(pm.getId(), pm.getDiscount(), pm.getLimit()));
+        }
+        return copy;
+    }
+}
@@ -1,11 +1,14 @@
 package com.optimusprice.service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
-import com.google.ortools.Loader;
 import com.google.ortools.linearsolver.MPConstraint;
 import com.google.ortools.linearsolver.MPObjective;
 import com.google.ortools.linearsolver.MPSolver;
@@ -13,11 +16,19 @@ import com.google.ortools.linearsolver.MPVariable;
 
 import com.optimusprice.exception.NoOptimalSolutionException;
 
+import com.optimusprice.io.AssignmentSink;
+
+import com.optimusprice.metrics.SolveMetrics;
+import com.optimusprice.metrics.SolvePhase;
+import com.optimusprice.metrics.SolveTrace;
+
+import com.optimusprice.model.Assignment;
 import com.optimusprice.model.Order;
 import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
 import com.optimusprice.model.Variant;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -25,15 +36,44 @@ import lombok.Setter;
  * SolverService uses linear optimization to assign orders to payment methods in a way that maximizes total discount and
  * respects payment method limits.
  */
-@AllArgsConstructor
 @Getter
 @Setter
 public class SolverService {
+    private static final int SLICE_ORDERS = 1024; // Orders one thread generates variants for at a time
+    private static final int BLOCK_ORDERS = 64 * SLICE_ORDERS; // Orders read from a stream before generating
+
     private List<Order> orders;
     private Map<String, PaymentMethod> paymentMethods;
+    @Setter(AccessLevel.NONE)
+    private int prunedVariants; // Dominated variants removed during the last variant generation
+    @Setter(AccessLevel.NONE)
+    private SolveMetrics lastMetrics; // Measurements of the last finished solve, null before the first one
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private SolveTrace trace = new SolveTrace(); // Measurements of the solve in progress
+    private SolveCache cache; // Optional cache of previous results, null to always solve
+    private Backend backend = Backend.SCIP; // Solver backend used by solve(), AUTO to choose per instance
+    private AssignmentSink assignmentSink; // Receives the final split of every order after solve(), null to discard
+    private boolean parallelGeneration = Runtime.getRuntime().availableProcessors() > 1; // Generate on all cores
+    private boolean presolve = true; // Fix orders that cannot compete for a limit before building the model
+    private SolveRecorder recorder; // Saves solves slower than its threshold for offline replay, null to never save
 
     /**
-     * Solves the optimization problem and distributes payments across available methods.
+     * Constructs a SolverService for the given orders and payment methods.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Available payment methods, keyed by ID
+     */
+    public SolverService(List<Order> orders, Map<String, PaymentMethod> paymentMethods) {
+        this.orders = orders;
+        this.paymentMethods = paymentMethods;
+    }
+
+    /**
+     * Solves the optimization problem and distributes payments across available methods. If a cache is set and holds
+     * the same problem, its stored spending is applied instead of solving again.
      *
      * @return Map of updated payment methods after solving
      */
@@ -43,157 +83,628 @@ public class SolverService {
             return paymentMethods;
         }
 
-        List<Variant> optSolution = findOptSolution();
-        distributePoints(optSolution);
+        SolveCache.Key key = null;
+        if (cache != null) {
+            key = cache.keyOf(orders, paymentMethods);
+            SolveResult cached = cache.get(key, orders);
+            if (cached != null) {
+                for (Map.Entry<String, Double> entry : cached.getSpent().entrySet()) {
+                    PaymentMethod pm = paymentMethods.get(entry.getKey());
+                    pm.setRemainingLimit(pm.getRemainingLimit() - entry.getValue());
+                }
+                if (assignmentSink != null) {
+                    for (Assignment a : cached.getAssignments()) {
+                        assignmentSink.accept(a.getOrderId(), a.getPayments(), a.getDiscount());
+                    }
+                }
+                return paymentMethods;
+            }
+        }
+
+        trace = new SolveTrace();
+        Map<String, PaymentMethod> before = recorder != null || key != null ? SolveRecorder.copyOf(paymentMethods)
+                : null;
+        try {
+            List<Variant> optSolution = findOptSolution();
+            distributePoints(optSolution);
+            emit(optSolution);
+            if (key != null) {
+                cache.put(key, spentSince(SolveResult.of(optSolution, paymentMethods), before));
+            }
+        } finally {
+            finishTrace();
+            recordIfSlow(orders, before);
+        }
 
         return paymentMethods;
     }
 
     /**
-     * Builds and solves the optimization model using Google OR-Tools.
+     * Restates a result's spending as what this solve took from the wallet. {@link SolveResult#of} counts everything
+     * spent from the limits, including what a reused wallet had spent before the solve; a cache hit deducts the cached
+     * spending again, so it must hold only this solve's share.
+     *
+     * @param result
+     *            Result of the solve
+     * @param before
+     *            Wallet as it was before the solve
+     *
+     * @return Result with the spending measured against the remaining limits before the solve
+     */
+    private SolveResult spentSince(SolveResult result, Map<String, PaymentMethod> before) {
+        Map<String, Double> spent = new LinkedHashMap<>();
+        for (Map.Entry<String, PaymentMethod> entry : before.entrySet()) {
+            spent.put(entry.getKey(),
+                    entry.getValue().getRemainingLimit() - paymentMethods.get(entry.getKey()).getRemainingLimit());
+        }
+        return new SolveResult(result.getAssignments(), Collections.unmodifiableMap(spent), result.getTotalDiscount(),
+                result.getBestBound(), result.isOptimal());
+    }
+
+    /**
+     * Solves the optimization problem for orders that arrive one at a time, e.g. while they are being parsed. Variants
+     * are generated as soon as each order is read and the order itself is not retained, so memory is bounded by the
+     * variants rather than by the orders, unless a recorder is set and needs them for a snapshot. The orders set on
+     * this service are ignored.
+     *
+     * @param orderStream
+     *            Orders to pay for
+     *
+     * @return Map of updated payment methods after solving
+     */
+    public Map<String, PaymentMethod> solve(Iterator<Order> orderStream) {
+        trace = new SolveTrace();
+        Map<String, PaymentMethod> before = recorder != null ? SolveRecorder.copyOf(paymentMethods) : null;
+        List<Order> seen = recorder != null ? new ArrayList<>() : null;
+        try {
+            VariantTable table = generateTable(seen == null ? orderStream : new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return orderStream.hasNext();
+                }
+
+                @Override
+                public Order next() {
+                    Order order = orderStream.next();
+                    seen.add(order);
+                    return order;
+                }
+            });
+            if (table.orderCount() == 0) {
+                return paymentMethods;
+            }
+
+            List<Variant> optSolution = select(table);
+            deductLimits(optSolution);
+            distributePoints(optSolution);
+            emit(optSolution);
+        } finally {
+            finishTrace();
+            recordIfSlow(seen, before);
+        }
+
+        return paymentMethods;
+    }
+
+    /**
+     * Queues a snapshot of the last solve if a recorder is set and the solve went over its threshold. The snapshot is
+     * written in the background, and failing to write it does not fail the solve.
+     *
+     * @param recorded
+     *            Orders of the solve
+     * @param before
+     *            Wallet as it was before the solve
+     */
+    private void recordIfSlow(List<Order> recorded, Map<String, PaymentMethod> before) {
+        if (recorder == null || !recorder.isSlow(lastMetrics)) {
+            return;
+        }
+        recorder.recordLater(List.copyOf(recorded), before, backend, lastMetrics);
+    }
+
+    /**
+     * Solves the optimization problem on a solver supplied by the caller, which must be empty.
+     *
+     * @param solver
+     *            Solver to build the model on
+     *
+     * @return Selected payment variants after points distribution
+     */
+    List<Variant> solve(MPSolver solver) {
+        List<Variant> optSolution = findOptSolution(solver);
+        distributePoints(optSolution);
+        return optSolution;
+    }
+
+    /**
+     * Hands the final split of every order to the assignment sink, if one is set.
+     *
+     * @param selected
+     *            Selected variants after points distribution
+     */
+    private void emit(List<Variant> selected) {
+        if (assignmentSink == null) {
+            return;
+        }
+        for (Variant v : selected) {
+            assignmentSink.accept(v.orderId, v.methods, v.discount);
+        }
+    }
+
+    /**
+     * Ends the measurements of the solve in progress, records them into the global
+     * {@link com.optimusprice.metrics.SolverMetrics} and starts a new trace for the next solve.
+     *
+     * @return Measurements of the finished solve
+     */
+    SolveMetrics finishTrace() {
+        lastMetrics = trace.finish(prunedVariants);
+        trace = new SolveTrace();
+        return lastMetrics;
+    }
+
+    /**
+     * Builds and solves the optimization model with the configured backend.
      *
      * @return List of selected payment variants for orders
      */
     private List<Variant> findOptSolution() {
-        Loader.loadNativeLibraries();
-        MPSolver solver = MPSolver.createSolver("SCIP");
+        List<Variant> selected = select(generateTable());
+        deductLimits(selected);
+        return selected;
+    }
 
-        List<List<Variant>> allVariants = new ArrayList<>();
-        for (Order order : orders) {
-            allVariants.add(generateVariants(order));
+    /**
+     * Selects variants: orders that do not compete for any limit are fixed by presolve (see {@link Presolver}) and only
+     * the others are handed to the configured backend. If presolve fixes every order, no solver is created at all.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return List of selected payment variants, in order index order
+     */
+    @SuppressWarnings("try")
+    List<Variant> select(VariantTable table) {
+        if (!presolve) {
+            return selectWithBackend(table);
+        }
+        int[] fixed;
+        try (SolveTrace.Span span = trace.start(SolvePhase.PRESOLVE)) {
+            fixed = Presolver.fix(table);
         }
 
-        Map<String, MPVariable> vars = new HashMap<>();
-        Map<String, Variant> varToVariant = new HashMap<>();
+        int presolved = 0;
+        double discount = 0;
+        for (int v : fixed) {
+            if (v >= 0) {
+                presolved++;
+                discount += table.discount[v];
+            }
+        }
+        if (presolved == 0) {
+            return selectWithBackend(table);
+        }
+        trace.recordPresolved(presolved);
+        trace.recordOutcome("OPTIMAL", discount, discount);
 
-        for (int i = 0; i < allVariants.size(); i++) {
-            List<Variant> variants = allVariants.get(i);
-            for (int j = 0; j < variants.size(); j++) {
-                String varName = "x_" + i + "_" + j;
-                MPVariable var = solver.makeBoolVar(varName);
-                vars.put(varName, var);
-                varToVariant.put(varName, variants.get(j));
+        int[] coupled = new int[fixed.length - presolved];
+        for (int i = 0, k = 0; i < fixed.length; i++) {
+            if (fixed[i] < 0) {
+                coupled[k++] = i;
             }
         }
+        List<Variant> solved = coupled.length > 0 ? selectWithBackend(table.subset(coupled)) : List.of();
+
+        List<Variant> selected = new ArrayList<>(fixed.length);
+        int k = 0;
+        for (int i = 0; i < fixed.length; i++) {
+            selected.add(fixed[i] >= 0 ? table.toVariant(fixed[i], table.orderIds[i]) : solved.get(k++));
+        }
+        return selected;
+    }
+
+    /**
+     * Selects variants with the configured backend on a solver created for this call and freed afterwards. The
+     * pure-Java backend falls back to SCIP if its search budget runs out.
+     *
+     * @param table
+     *            Variants of every order
+     *
+     * @return List of selected payment variants, in order index order
+     */
+    private List<Variant> selectWithBackend(VariantTable table) {
+        Backend chosen = backend.resolve(table);
+        if (chosen == Backend.EXACT) {
+            Selection exact = ExactSelector.select(table, Backend.EXACT_NODE_LIMIT, trace);
+            if (exact != null) {
+                return exact.getVariants();
+            }
+            chosen = Backend.SCIP; // Search budget exhausted, hand the instance to a native solver
+        }
+
+        SolverEngine.loadNativeLibraries();
+        if (chosen == Backend.CP_SAT) {
+            return CpSatSelector.select(table, null, 0, Runtime.getRuntime().availableProcessors(), trace)
+                    .getVariants();
+        }
+
+        MPSolver solver = MPSolver.createSolver(chosen.getSolverId());
+        try {
+            return selectVariants(solver, table);
+        } finally {
+            solver.delete();
+        }
+    }
+
+    /**
+     * Builds and solves the optimization model on the given solver and deducts the chosen amounts from the remaining
+     * limits.
+     *
+     * @param solver
+     *            Empty solver to build the model on
+     *
+     * @return List of selected payment variants for orders
+     */
+    private List<Variant> findOptSolution(MPSolver solver) {
+        List<Variant> selected = selectVariants(solver, generateTable());
+        deductLimits(selected);
+        return selected;
+    }
+
+    /**
+     * Generates the variants of every order into a compact table and drops the dominated ones (see
+     * {@link VariantPruner}).
+     *
+     * @return Variants of every order
+     */
+    VariantTable generateTable() {
+        return generateTable(orders.iterator());
+    }
 
-        for (int i = 0; i < allVariants.size(); i++) {
-            MPConstraint constraint = solver.makeConstraint(1, 1);
-            for (int j = 0; j < allVariants.get(i).size(); j++) {
-                constraint.setCoefficient(vars.get("x_" + i + "_" + j), 1);
+    /**
+     * Generates the variants of every order produced by the iterator into a compact table and drops the dominated ones.
+     *
+     * @param orderStream
+     *            Orders to generate variants for
+     *
+     * @return Variants of every order
+     */
+    @SuppressWarnings("try")
+    VariantTable generateTable(Iterator<Order> orderStream) {
+        MethodIndex methods = new MethodIndex(paymentMethods);
+        if (backend == Backend.COLUMN_GENERATION) {
+            return generateColumns(methods, orderStream);
+        }
+        VariantTable table = new VariantTable(methods, orders != null ? orders.size() : 0);
+        int pruned = 0;
+        try (SolveTrace.Span span = trace.start(SolvePhase.VARIANT_GENERATION)) {
+            if (parallelGeneration) {
+                pruned = generateParallel(methods, table, orderStream);
+            } else {
+                VariantGenerator generator = new VariantGenerator(methods);
+                while (orderStream.hasNext()) {
+                    pruned += generator.append(table, orderStream.next(), true);
+                }
             }
         }
+        prunedVariants = pruned;
+        trace.recordOrders(table.orderCount());
+        return table;
+    }
+
+    /**
+     * Generates variants on all cores. The stream is read in blocks, every block is cut into slices of consecutive
+     * orders, and every slice is generated into a table of its own by a generator of its own. The slice tables are
+     * appended in slice order, so the result does not depend on scheduling and equals a sequential generation.
+     *
+     * @param methods
+     *            Interned payment methods
+     * @param table
+     *            Table to append the variants to
+     * @param orderStream
+     *            Orders to generate variants for
+     *
+     * @return Number of variants dropped as dominated
+     */
+    private static int generateParallel(MethodIndex methods, VariantTable table, Iterator<Order> orderStream) {
+        int pruned = 0;
+        List<Order> block = new ArrayList<>();
+        while (orderStream.hasNext()) {
+            block.clear();
+            while (orderStream.hasNext() && block.size() < BLOCK_ORDERS) {
+                block.add(orderStream.next());
+            }
 
-        for (String method : paymentMethods.keySet()) {
-            double limit = paymentMethods.get(method).getLimit();
-            MPConstraint constraint = solver.makeConstraint(0, limit);
-            for (int i = 0; i < allVariants.size(); i++) {
-                for (int j = 0; j < allVariants.get(i).size(); j++) {
-                    Variant v = allVariants.get(i).get(j);
-                    double amount = v.methods.getOrDefault(method, 0.0);
-                    constraint.setCoefficient(vars.get("x_" + i + "_" + j), amount);
+            int slices = (block.size() + SLICE_ORDERS - 1) / SLICE_ORDERS;
+            VariantTable[] parts = new VariantTable[slices];
+            int[] prunedBy = new int[slices];
+            IntStream.range(0, slices).parallel().forEach(s -> {
+                List<Order> slice = block.subList(s * SLICE_ORDERS, Math.min(block.size(), (s + 1) * SLICE_ORDERS));
+                VariantGenerator generator = new VariantGenerator(methods);
+                parts[s] = new VariantTable(methods, slice.size());
+                for (Order order : slice) {
+                    prunedBy[s] += generator.append(parts[s], order, true);
                 }
+            });
+            for (int s = 0; s < slices; s++) {
+                table.append(parts[s]);
+                pruned += prunedBy[s];
             }
         }
+        return pruned;
+    }
 
-        MPObjective objective = solver.objective();
-        for (String varName : vars.keySet()) {
-            double discount = varToVariant.get(varName).discount;
-            objective.setCoefficient(vars.get(varName), discount);
+    /**
+     * Generates only the variants that price into the LP relaxation (see {@link ColumnGenerator}). Pricing revisits the
+     * orders every round, so a stream is collected first; the orders are small next to their variants.
+     *
+     * @param methods
+     *            Interned payment methods
+     * @param orderStream
+     *            Orders to generate variants for
+     *
+     * @return Generated variants of every order
+     */
+    @SuppressWarnings("try")
+    private VariantTable generateColumns(MethodIndex methods, Iterator<Order> orderStream) {
+        List<Order> collected = new ArrayList<>(orders != null ? orders.size() : 16);
+        orderStream.forEachRemaining(collected::add);
+        SolverEngine.loadNativeLibraries();
+
+        VariantTable table;
+        try (SolveTrace.Span span = trace.start(SolvePhase.VARIANT_GENERATION)) {
+            table = ColumnGenerator.generate(methods, collected, trace);
         }
-        objective.setMaximization();
+        prunedVariants = 0;
+        trace.recordOrders(table.orderCount());
+        return table;
+    }
 
-        MPSolver.ResultStatus resultStatus = solver.solve();
-        if (resultStatus != MPSolver.ResultStatus.OPTIMAL) {
-            throw new NoOptimalSolutionException("Optimal solution not found.");
+    /**
+     * Generates the variants of every order and drops the dominated ones, materialized as {@link Variant} objects.
+     *
+     * @return Variants of every order, indexed by order
+     */
+    List<List<Variant>> generateAllVariants() {
+        return generateTable().toLists();
+    }
+
+    /**
+     * Deducts the amounts paid in the selected variants from the remaining limits of their payment methods.
+     *
+     * @param selected
+     *            Selected variants
+     */
+    void deductLimits(List<Variant> selected) {
+        for (Variant v : selected) {
+            for (Map.Entry<String, Double> entry : v.methods.entrySet()) {
+                PaymentMethod pm = paymentMethods.get(entry.getKey());
+                pm.setRemainingLimit(pm.getRemainingLimit() - entry.getValue());
+            }
         }
+    }
 
-        List<Variant> selected = new ArrayList<>();
-        for (String varName : vars.keySet()) {
-            if (vars.get(varName).solutionValue() == 1.0) {
-                Variant v = varToVariant.get(varName);
-                selected.add(v);
+    /**
+     * Builds the model on the given solver and returns the chosen variant of every order. Variables are addressed by
+     * (order, variant) index and each variant only contributes coefficients to the limits of the methods it actually
+     * uses, so the model grows with the number of non-zeros rather than with methods x variants.
+     *
+     * @param solver
+     *            Empty solver to build the model on
+     * @param table
+     *            Variants of every order
+     *
+     * @return List of selected payment variants, in order index order
+     */
+    List<Variant> selectVariants(MPSolver solver, VariantTable table) {
+        return selectVariants(solver, table, null, 0).getVariants();
+    }
 
-                for (Map.Entry<String, Double> entry : v.methods.entrySet()) {
-                    String method = entry.getKey();
-                    paymentMethods.get(method)
-                            .setRemainingLimit(paymentMethods.get(method).getRemainingLimit() - entry.getValue());
+    /**
+     * Builds the model on the given solver and solves it, optionally within a wall-clock budget. With a budget the
+     * greedy assignment of {@link GreedyAssigner} is passed to the solver as a hint and the best incumbent found in
+     * time is returned; if the solver finds none, the greedy assignment itself is returned when it covers every order.
+     *
+     * @param solver
+     *            Empty solver to build the model on
+     * @param table
+     *            Variants of every order
+     * @param counts
+     *            Number of identical orders behind every row of the table, or null if every row is a single order
+     * @param timeLimitMillis
+     *            Wall-clock budget in milliseconds, or 0 to solve to optimality
+     *
+     * @return Selected variants and their objective, bound and optimality; a row standing for several orders
+     *         contributes one variant per order
+     */
+    @SuppressWarnings("try")
+    Selection selectVariants(MPSolver solver, VariantTable table, int[] counts, long timeLimitMillis) {
+        MPVariable[][] vars;
+        try (SolveTrace.Span span = trace.start(SolvePhase.MODEL_BUILD)) {
+            vars = buildModel(solver, table, counts);
+        }
+        MPObjective objective = solver.objective();
+
+        int[] greedy = null;
+        if (timeLimitMillis > 0) {
+            if (counts == null) {
+                greedy = GreedyAssigner.assign(table);
+                setHint(solver, vars, greedy);
+            }
+            solver.setTimeLimit(timeLimitMillis);
+        }
+
+        MPSolver.ResultStatus resultStatus;
+        try (SolveTrace.Span span = trace.start(SolvePhase.SOLVE)) {
+            resultStatus = solver.solve();
+        }
+        double upperBound = GreedyAssigner.upperBound(table);
+
+        if (resultStatus == MPSolver.ResultStatus.OPTIMAL
+                || (timeLimitMillis > 0 && resultStatus == MPSolver.ResultStatus.FEASIBLE)) {
+            List<Variant> selected = new ArrayList<>(table.orderCount());
+            try (SolveTrace.Span span = trace.start(SolvePhase.EXTRACTION)) {
+                for (int i = 0; i < vars.length; i++) {
+                    for (int j = 0; j < vars[i].length; j++) {
+                        for (long k = Math.round(vars[i][j].solutionValue()); k > 0; k--) {
+                            selected.add(table.toVariant(table.orderStart[i] + j, table.orderIds[i]));
+                        }
+                    }
                 }
             }
+            double value = objective.value();
+            boolean optimal = resultStatus == MPSolver.ResultStatus.OPTIMAL;
+            double bound = optimal ? value : Math.min(upperBound, objective.bestBound());
+            trace.recordOutcome(resultStatus.name(), value, Math.max(bound, value));
+            return new Selection(selected, value, Math.max(bound, value), optimal);
         }
-        return selected;
+
+        if (greedy != null && resultStatus != MPSolver.ResultStatus.INFEASIBLE
+                && Arrays.stream(greedy).allMatch(j -> j >= 0)) {
+            List<Variant> selected = new ArrayList<>(table.orderCount());
+            double value = 0;
+            for (int i = 0; i < greedy.length; i++) {
+                Variant v = table.toVariant(table.orderStart[i] + greedy[i], table.orderIds[i]);
+                selected.add(v);
+                value += v.discount;
+            }
+            trace.recordOutcome(MPSolver.ResultStatus.FEASIBLE.name(), value, Math.max(upperBound, value));
+            return new Selection(selected, value, Math.max(upperBound, value), false);
+        }
+
+        trace.recordOutcome(resultStatus.name(), 0, upperBound);
+        throw new NoOptimalSolutionException("Optimal solution not found.");
     }
 
     /**
-     * Generates all valid payment variants for a given order based on its value, promotions, and available payment
-     * methods.
+     * Builds and solves an aggregated model in which identical orders (same value and same set of promotions, see
+     * {@link OrderAggregator}) share one integer variable per variant counting how many of them take it. This removes
+     * the symmetry between interchangeable orders. The counts are expanded back into one variant per order afterwards.
      *
-     * @param order
-     *            The order for which to generate variants
+     * @param solver
+     *            Empty solver to build the model on
      *
-     * @return List of valid variants
+     * @return List of selected payment variants, in order index order
      */
-    private List<Variant> generateVariants(Order order) {
-        if (order.getValue() <= 0) {
-            return List.of();
+    List<Variant> selectAggregated(MPSolver solver) {
+        List<int[]> groups = OrderAggregator.group(orders);
+        int[] counts = new int[groups.size()];
+        List<Order> representatives = new ArrayList<>(groups.size());
+        for (int g = 0; g < groups.size(); g++) {
+            representatives.add(orders.get(groups.get(g)[0]));
+            counts[g] = groups.get(g).length;
         }
 
-        List<Variant> variants = new ArrayList<>();
-        double value = order.getValue();
-        List<String> promos = order.getPromotions() != null ? order.getPromotions() : new ArrayList<>();
+        VariantTable table = generateTable(representatives.iterator());
+        List<Variant> chosen = selectVariants(solver, table, counts, 0).getVariants();
 
-        // All with promo card
-        for (String method : promos) {
-            PaymentMethod pm = paymentMethods.get(method);
-            if (pm != null && pm.getLimit() >= value) {
-                double discount = pm.getDiscount();
-                double pay = value * (1 - discount / 100.0);
-                variants.add(new Variant(Map.of(method, pay), value - pay, order.getId()));
+        // Every chosen variant is a fresh copy, so it only needs the ID of the order it is expanded to
+        Variant[] byOrder = new Variant[orders.size()];
+        int k = 0;
+        for (int[] group : groups) {
+            for (int i : group) {
+                Variant v = chosen.get(k++);
+                v.orderId = orders.get(i).getId();
+                byOrder[i] = v;
             }
         }
+        return new ArrayList<>(Arrays.asList(byOrder));
+    }
 
-        if (paymentMethods.containsKey("PUNKTY")) {
-            PaymentMethod punkty = paymentMethods.get("PUNKTY");
+    /**
+     * Builds the model on the given solver. Variables are addressed by (row, variant) index and each variant only
+     * contributes coefficients to the limits of the methods it actually uses.
+     *
+     * @param solver
+     *            Empty solver to build the model on
+     * @param table
+     *            Variants of every row
+     * @param counts
+     *            Number of identical orders behind every row, or null if every row is a single order
+     *
+     * @return Model variables, indexed by row and variant
+     */
+    MPVariable[][] buildModel(MPSolver solver, VariantTable table, int[] counts) {
+        MethodIndex methods = table.methods;
+        MPConstraint[] limits = new MPConstraint[methods.size()];
+        for (int m = 0; m < limits.length; m++) {
+            limits[m] = solver.makeConstraint(0, methods.limit[m]);
+        }
 
-            // All with points
-            if (punkty.getLimit() >= value) {
-                double discount = punkty.getDiscount();
-                double pay = value * (1 - discount / 100.0);
-                variants.add(new Variant(Map.of("PUNKTY", pay), value - pay, order.getId()));
-            }
+        MPObjective objective = solver.objective();
+        MPVariable[][] vars = new MPVariable[table.orderCount()][];
+        long variables = 0;
+        long nonZeros = 0;
+
+        for (int i = 0; i < vars.length; i++) {
+            int first = table.orderStart[i];
+            int count = counts == null ? 1 : counts[i];
+            MPConstraint choice = solver.makeConstraint(count, count);
+            vars[i] = new MPVariable[table.variantCount(i)];
+            variables += vars[i].length;
+            nonZeros += vars[i].length;
 
-            // Part with points + one with traditional method
-            double minPoints = 0.1 * value;
-            if (paymentMethods.get("PUNKTY").getLimit() >= minPoints) {
-                double cashPart = value - minPoints - 0.10 * value;
-                for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
-                    String method = entry.getKey();
-                    if (method.equals("PUNKTY"))
-                        continue;
-                    if (entry.getValue().getLimit() >= cashPart) {
-                        Map<String, Double> map = new HashMap<>();
-                        map.put("PUNKTY", minPoints);
-                        map.put(method, cashPart);
-                        variants.add(new Variant(map, 0.10 * value, order.getId()));
+            for (int j = 0; j < vars[i].length; j++) {
+                int v = first + j;
+                MPVariable var = counts == null ? solver.makeBoolVar("") : solver.makeIntVar(0, count, "");
+                vars[i][j] = var;
+                choice.setCoefficient(var, 1);
+                if (table.discount[v] != 0) {
+                    objective.setCoefficient(var, table.discount[v]);
+                }
+
+                for (int e = table.entryStart[v]; e < table.entryStart[v + 1]; e++) {
+                    if (table.amount[e] != 0) {
+                        limits[table.methodId[e]].setCoefficient(var, table.amount[e]);
+                        nonZeros++;
                     }
                 }
             }
         }
+        objective.setMaximization();
+        trace.recordModel(variables, limits.length + vars.length, nonZeros);
+        return vars;
+    }
 
-        // All without promo
-        for (String method : paymentMethods.keySet()) {
-            if (method.equals("PUNKTY"))
+    /**
+     * Passes a (possibly partial) assignment to the solver as a solution hint.
+     *
+     * @param solver
+     *            Solver holding the model
+     * @param vars
+     *            Model variables, indexed by order and variant
+     * @param choice
+     *            Chosen variant index of every order, or -1 to leave an order unhinted
+     */
+    private static void setHint(MPSolver solver, MPVariable[][] vars, int[] choice) {
+        List<MPVariable> hinted = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < vars.length; i++) {
+            if (choice[i] < 0) {
                 continue;
-            if (promos != null) {
-                if (promos.contains(method))
-                    continue;
             }
-
-            if (paymentMethods.get(method).getLimit() >= value) {
-                variants.add(new Variant(Map.of(method, value), 0.0, order.getId()));
+            for (int j = 0; j < vars[i].length; j++) {
+                hinted.add(vars[i][j]);
+                values.add(j == choice[i] ? 1.0 : 0.0);
             }
         }
+        solver.setHint(hinted.toArray(new MPVariable[0]), values.stream().mapToDouble(Double::doubleValue).toArray());
+    }
 
-        return variants;
+    /**
+     * Generates all valid payment variants for a given order based on its value, promotions, and available payment
+     * methods.
+     *
+     * @param order
+     *            The order for which to generate variants
+     *
+     * @return List of valid variants
+     */
+    List<Variant> generateVariants(Order order) {
+        MethodIndex methods = new MethodIndex(paymentMethods);
+        VariantTable table = new VariantTable(methods, 1);
+        new VariantGenerator(methods).append(table, order, false);
+        return table.variantsOf(0);
     }
 
     /**
@@ -202,7 +713,24 @@ public class SolverService {
      * @param variants
      *            List of selected variants
      */
-    private void distributePoints(List<Variant> variants) {
+    @SuppressWarnings("try")
+    void distributePoints(List<Variant> variants) {
+        if (!paymentMethods.containsKey("PUNKTY")) {
+            return;
+        }
+
+        try (SolveTrace.Span span = trace.start(SolvePhase.POINTS_DISTRIBUTION)) {
+            distributeRemainingPoints(variants);
+        }
+    }
+
+    /**
+     * Moves the remaining loyalty points onto the first selected variant that can absorb them.
+     *
+     * @param variants
+     *            List of selected variants
+     */
+    private void distributeRemainingPoints(List<Variant> variants) {
         List<Variant> pointedVariants = new ArrayList<>();
         for (Variant variant : variants) {
             if (variant.methods.containsKey("PUNKTY")) {
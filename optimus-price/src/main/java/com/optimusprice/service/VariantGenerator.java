@@ -0,0 +1,181 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.optimusprice.model.Order;
+
+/**
+ * Generates the payment variants of orders straight into a {@link VariantTable}, working on interned method IDs only.
+ * The methods able to pay an amount come from the limit-sorted {@link MethodIndex#byLimit} as a bitset, and the
+ * promotion lists of orders are interned to their method IDs and a bitset, so neither a scan of the wallet per order
+ * nor a lookup per promoted method is needed. Holds scratch state, so one instance must not be shared between threads.
+ */
+final class VariantGenerator {
+    private static final int MAX_INTERNED = 4096; // Distinct promotion lists remembered before the cache is reset
+
+    private final MethodIndex methods;
+    private final VariantPruner pruner = new VariantPruner();
+    private final long[] fitting; // Scratch bitset of the methods whose limit covers an amount
+    private final Map<List<String>, Promotions> interned = new HashMap<>();
+
+    /**
+     * Promotion list of an order resolved against the wallet.
+     */
+    private static final class Promotions {
+        private final int[] ids; // Dense IDs of the promoted methods in the wallet, in list order
+        private final long[] mask; // Bitset of the same IDs
+
+        private Promotions(int[] ids, long[] mask) {
+            this.ids = ids;
+            this.mask = mask;
+        }
+    }
+
+    /**
+     * Creates a generator for a wallet.
+     *
+     * @param methods
+     *            Interned payment methods
+     */
+    VariantGenerator(MethodIndex methods) {
+        this.methods = methods;
+        this.fitting = new long[(methods.size() + 63) >>> 6];
+    }
+
+    /**
+     * Appends the variants of an order as a new order of the table.
+     *
+     * @param table
+     *            Table to append to
+     * @param order
+     *            Order to generate variants for
+     * @param prune
+     *            Whether to drop dominated variants (see {@link VariantPruner})
+     *
+     * @return Number of variants dropped as dominated
+     */
+    int append(VariantTable table, Order order, boolean prune) {
+        table.startOrder(order.getId());
+        appendVariants(table, order);
+        int removed = prune ? pruner.pruneOpenOrder(table) : 0;
+        table.endOrder();
+        return removed;
+    }
+
+    /**
+     * Generates all valid payment variants for a given order based on its value, promotions, and available payment
+     * methods.
+     *
+     * @param table
+     *            Table with the order open
+     * @param order
+     *            The order for which to generate variants
+     */
+    private void appendVariants(VariantTable table, Order order) {
+        if (order.getValue() <= 0) {
+            return;
+        }
+
+        double value = order.getValue();
+        Promotions promos = promotionsOf(order.getPromotions());
+        int points = methods.points;
+
+        // All with promo card
+        for (int m : promos.ids) {
+            if (methods.limit[m] >= value) {
+                double pay = value * (1 - methods.discount[m] / 100.0);
+                table.addVariant(value - pay);
+                table.addEntry(m, pay);
+            }
+        }
+
+        if (points >= 0) {
+            // All with points
+            if (methods.limit[points] >= value) {
+                double pay = value * (1 - methods.discount[points] / 100.0);
+                table.addVariant(value - pay);
+                table.addEntry(points, pay);
+            }
+
+            // Part with points + one with traditional method
+            double minPoints = 0.1 * value;
+            if (methods.limit[points] >= minPoints) {
+                double cashPart = value - minPoints - 0.10 * value;
+                markFitting(cashPart);
+                for (int w = 0; w < fitting.length; w++) {
+                    for (long bits = fitting[w]; bits != 0; bits &= bits - 1) {
+                        int m = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        if (m != points) {
+                            table.addVariant(0.10 * value);
+                            table.addEntry(points, minPoints);
+                            table.addEntry(m, cashPart);
+                        }
+                    }
+                }
+            }
+        }
+
+        // All without promo
+        markFitting(value);
+        for (int w = 0; w < fitting.length; w++) {
+            for (long bits = fitting[w] & ~promos.mask[w]; bits != 0; bits &= bits - 1) {
+                int m = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (m != points) {
+                    table.addVariant(0.0);
+                    table.addEntry(m, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills {@link #fitting} with the methods whose limit covers an amount. Costs the number of such methods plus a
+     * word per 64 methods, however large the wallet.
+     *
+     * @param amount
+     *            Amount to cover
+     */
+    private void markFitting(double amount) {
+        Arrays.fill(fitting, 0L);
+        int count = methods.fitting(amount);
+        for (int i = 0; i < count; i++) {
+            int m = methods.byLimit[i];
+            fitting[m >>> 6] |= 1L << m;
+        }
+    }
+
+    /**
+     * Resolves a promotion list against the wallet, once per distinct list.
+     *
+     * @param promotions
+     *            Promoted method IDs of an order, may be null
+     *
+     * @return Dense IDs and bitset of the promoted methods the wallet holds
+     */
+    private Promotions promotionsOf(List<String> promotions) {
+        List<String> key = promotions != null ? promotions : List.of();
+        Promotions promos = interned.get(key);
+        if (promos == null) {
+            int[] ids = new int[key.size()];
+            long[] mask = new long[fitting.length];
+            int n = 0;
+            for (String method : key) {
+                int m = methods.idOf(method);
+                if (m >= 0) {
+                    ids[n++] = m;
+                    mask[m >>> 6] |= 1L << m;
+                }
+            }
+            promos = new Promotions(Arrays.copyOf(ids, n), mask);
+            if (interned.size() >= MAX_INTERNED) {
+                interned.clear();
+            }
+            interned.put(new ArrayList<>(key), promos);
+        }
+        return promos;
+    }
+}
@@ -0,0 +1,203 @@
+package com.optimusprice.service;
+
+import java.util.Arrays;
+
+/**
+ * Removes dominated variants of an order before the model is built. A variant is dominated when another variant of the
+ * same order gives at least the same discount while paying with a subset of its methods and no larger amount on any of
+ * them. Replacing a dominated variant by its dominator never violates a limit and never lowers the discount, so pruning
+ * keeps the optimal objective unchanged.
+ * <p>
+ * Works in place on the open order of a {@link VariantTable}. Holds scratch arrays, so one instance must not be shared
+ * between threads.
+ */
+final class VariantPruner {
+    private static final double EPS = 1e-9;
+
+    private long[] keys = new long[16]; // Method set key of every variant of the order
+    private int[] sorted = new int[16]; // Variants of the order sorted by key
+    private boolean[] removed = new boolean[16];
+
+    /**
+     * Removes the dominated variants of the open order of a table. Of several identical variants only the first one is
+     * kept; the order of the kept variants is preserved.
+     *
+     * @param table
+     *            Table with an open order
+     *
+     * @return Number of removed variants
+     */
+    int pruneOpenOrder(VariantTable table) {
+        int first = table.orderStart[table.orders];
+        int k = table.variants - first;
+        if (k < 2) {
+            return 0;
+        }
+        if (keys.length < k) {
+            keys = new long[k * 2];
+            sorted = new int[k * 2];
+            removed = new boolean[k * 2];
+        }
+
+        // Only variants paying with a subset of a variant's methods can dominate it, so index them by method set
+        boolean general = false;
+        for (int j = 0; j < k; j++) {
+            keys[j] = key(table, first + j);
+            general |= keys[j] < 0;
+            sorted[j] = j;
+            removed[j] = false;
+        }
+        for (int p = 1; p < k; p++) {
+            int j = sorted[p];
+            int q = p - 1;
+            while (q >= 0 && keys[sorted[q]] > keys[j]) {
+                sorted[q + 1] = sorted[q];
+                q--;
+            }
+            sorted[q + 1] = j;
+        }
+
+        int removedCount = 0;
+        for (int j = 0; j < k; j++) {
+            if (general ? isDominatedByAny(table, first, k, j) : isDominated(table, first, k, j)) {
+                removed[j] = true;
+                removedCount++;
+            }
+        }
+
+        if (removedCount > 0) {
+            compact(table, first, k);
+        }
+        return removedCount;
+    }
+
+    /**
+     * Encodes the method set of a variant with at most two methods as a single number.
+     *
+     * @return Key of the method set, or -1 for variants with more than two methods
+     */
+    private static long key(VariantTable table, int v) {
+        int e = table.entryStart[v];
+        switch (table.entryStart[v + 1] - e) {
+            case 0:
+                return 0;
+            case 1:
+                return table.methodId[e] + 1;
+            case 2:
+                return key(table.methodId[e], table.methodId[e + 1]);
+            default:
+                return -1;
+        }
+    }
+
+    private static long key(int a, int b) {
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        return ((long) (lo + 1) << 32) | (hi + 1);
+    }
+
+    /**
+     * Checks variant j against the remaining variants whose method set is a subset of its own.
+     */
+    private boolean isDominated(VariantTable table, int first, int k, int j) {
+        int v = first + j;
+        int e = table.entryStart[v];
+        int n = table.entryStart[v + 1] - e;
+        if (n == 1) {
+            return isDominatedWithin(table, first, k, j, keys[j]);
+        }
+        if (n == 2) {
+            return isDominatedWithin(table, first, k, j, table.methodId[e] + 1)
+                    || isDominatedWithin(table, first, k, j, table.methodId[e + 1] + 1)
+                    || isDominatedWithin(table, first, k, j, keys[j]);
+        }
+        return false;
+    }
+
+    private boolean isDominatedWithin(VariantTable table, int first, int k, int j, long key) {
+        int lo = 0;
+        int hi = k;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[sorted[mid]] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int p = lo; p < k && keys[sorted[p]] == key; p++) {
+            int other = sorted[p];
+            if (other != j && !removed[other] && dominates(table, first + other, first + j, other < j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isDominatedByAny(VariantTable table, int first, int k, int j) {
+        for (int other = 0; other < k; other++) {
+            if (other != j && !removed[other] && dominates(table, first + other, first + j, other < j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether variant a dominates variant b.
+     *
+     * @param winsTies
+     *            Whether a is kept over b when both are equivalent
+     *
+     * @return True if b can be dropped in favour of a
+     */
+    private static boolean dominates(VariantTable table, int a, int b, boolean winsTies) {
+        if (table.discount[a] < table.discount[b] - EPS) {
+            return false;
+        }
+
+        int aStart = table.entryStart[a];
+        int aEnd = table.entryStart[a + 1];
+        int bStart = table.entryStart[b];
+        int bEnd = table.entryStart[b + 1];
+        boolean strict = table.discount[a] > table.discount[b] + EPS || aEnd - aStart < bEnd - bStart;
+
+        for (int ea = aStart; ea < aEnd; ea++) {
+            int eb = bStart;
+            while (eb < bEnd && table.methodId[eb] != table.methodId[ea]) {
+                eb++;
+            }
+            if (eb == bEnd || table.amount[ea] > table.amount[eb] + EPS) {
+                return false;
+            }
+            strict |= table.amount[ea] < table.amount[eb] - EPS;
+        }
+        return strict || winsTies;
+    }
+
+    /**
+     * Moves the kept variants of the open order and their entries down over the removed ones.
+     */
+    private void compact(VariantTable table, int first, int k) {
+        int w = first;
+        int eWrite = table.entryStart[first];
+        for (int j = 0; j < k; j++) {
+            int r = first + j;
+            int es = table.entryStart[r];
+            int ee = table.entryStart[r + 1];
+            if (removed[j]) {
+                continue;
+            }
+            table.discount[w] = table.discount[r];
+            table.entryStart[w] = eWrite;
+            System.arraycopy(table.methodId, es, table.methodId, eWrite, ee - es);
+            System.arraycopy(table.amount, es, table.amount, eWrite, ee - es);
+            eWrite += ee - es;
+            w++;
+        }
+        table.variants = w;
+        table.entries = eWrite;
+        table.entryStart[w] = eWrite;
+        Arrays.fill(removed, 0, k, false);
+    }
+}
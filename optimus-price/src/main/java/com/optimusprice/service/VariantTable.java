@@ -0,0 +1,209 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.optimusprice.model.Variant;
+
+/**
+ * Compact, struct-of-arrays store of the variants of many orders. Variants of an order are contiguous and every variant
+ * holds a contiguous run of (method ID, amount) entries, so generating millions of variants allocates a handful of
+ * growing primitive arrays instead of one map per variant. {@link Variant} objects with a map of payments are only
+ * materialized on demand, typically for the selected variants.
+ * <p>
+ * The table is filled order by order: {@link #startOrder(String)}, then {@link #addVariant(double)} followed by its
+ * {@link #addEntry(int, double)} calls for every variant, then {@link #endOrder()}. The variants of the open order may
+ * still be rewritten, which is how dominated variants are pruned without copying.
+ */
+final class VariantTable {
+    final MethodIndex methods;
+
+    int orders; // Number of finished orders
+    String[] orderIds;
+    int[] orderStart; // First variant of every order; orderStart[orders] is the first variant of the open order
+
+    int variants;
+    double[] discount;
+    int[] entryStart; // First entry of every variant; entryStart[variants] == entries
+
+    int entries;
+    int[] methodId;
+    double[] amount;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param methods
+     *            Interned payment methods used by the entries
+     * @param expectedOrders
+     *            Capacity hint
+     */
+    VariantTable(MethodIndex methods, int expectedOrders) {
+        this.methods = methods;
+        int orderCapacity = Math.max(4, expectedOrders);
+        int variantCapacity = orderCapacity * 4;
+        orderIds = new String[orderCapacity];
+        orderStart = new int[orderCapacity + 1];
+        discount = new double[variantCapacity];
+        entryStart = new int[variantCapacity + 1];
+        methodId = new int[variantCapacity * 2];
+        amount = new double[variantCapacity * 2];
+    }
+
+    void startOrder(String orderId) {
+        if (orders == orderIds.length) {
+            orderIds = Arrays.copyOf(orderIds, orders * 2);
+            orderStart = Arrays.copyOf(orderStart, orders * 2 + 1);
+        }
+        orderIds[orders] = orderId;
+        orderStart[orders] = variants;
+    }
+
+    void addVariant(double variantDiscount) {
+        if (variants + 1 >= entryStart.length) {
+            discount = Arrays.copyOf(discount, variants * 2);
+            entryStart = Arrays.copyOf(entryStart, variants * 2 + 1);
+        }
+        discount[variants] = variantDiscount;
+        entryStart[variants] = entries;
+        variants++;
+        entryStart[variants] = entries;
+    }
+
+    void addEntry(int method, double entryAmount) {
+        if (entries == methodId.length) {
+            methodId = Arrays.copyOf(methodId, entries * 2);
+            amount = Arrays.copyOf(amount, entries * 2);
+        }
+        methodId[entries] = method;
+        amount[entries] = entryAmount;
+        entries++;
+        entryStart[variants] = entries;
+    }
+
+    void endOrder() {
+        orders++;
+        orderStart[orders] = variants;
+    }
+
+    int orderCount() {
+        return orders;
+    }
+
+    int variantCount(int order) {
+        return orderStart[order + 1] - orderStart[order];
+    }
+
+    /**
+     * Materializes a variant.
+     *
+     * @param v
+     *            Variant index in the table
+     * @param orderId
+     *            Order ID to attach
+     *
+     * @return Variant with a fresh, mutable map of payments
+     */
+    Variant toVariant(int v, String orderId) {
+        Map<String, Double> payments = new HashMap<>(4);
+        for (int e = entryStart[v]; e < entryStart[v + 1]; e++) {
+            payments.put(methods.ids[methodId[e]], amount[e]);
+        }
+        return new Variant(payments, discount[v], orderId);
+    }
+
+    /**
+     * Materializes all variants of an order.
+     *
+     * @param order
+     *            Order index in the table
+     *
+     * @return Variants of the order
+     */
+    List<Variant> variantsOf(int order) {
+        List<Variant> result = new ArrayList<>(variantCount(order));
+        for (int v = orderStart[order]; v < orderStart[order + 1]; v++) {
+            result.add(toVariant(v, orderIds[order]));
+        }
+        return result;
+    }
+
+    /**
+     * Materializes the whole table as one list of variants per order.
+     *
+     * @return Variants of every order, indexed by order
+     */
+    List<List<Variant>> toLists() {
+        List<List<Variant>> result = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            result.add(variantsOf(i));
+        }
+        return result;
+    }
+
+    /**
+     * Copies a subset of the orders into a new table.
+     *
+     * @param subset
+     *            Order indexes to copy, in the order they should appear
+     *
+     * @return Table over the same methods holding only the given orders
+     */
+    VariantTable subset(int[] subset) {
+        VariantTable copy = new VariantTable(methods, subset.length);
+        for (int i : subset) {
+            copy.startOrder(orderIds[i]);
+            for (int v = orderStart[i]; v < orderStart[i + 1]; v++) {
+                copy.addVariant(discount[v]);
+                for (int e = entryStart[v]; e < entryStart[v + 1]; e++) {
+                    copy.addEntry(methodId[e], amount[e]);
+                }
+            }
+            copy.endOrder();
+        }
+        return copy;
+    }
+
+    /**
+     * Appends all orders of another table over the same methods, in bulk. Used to merge tables generated in parallel,
+     * which keeps the result identical to generating all orders into one table.
+     *
+     * @param other
+     *            Table to append; no order of either table may be open
+     */
+    void append(VariantTable other) {
+        int newOrders = orders + other.orders;
+        int newVariants = variants + other.variants;
+        int newEntries = entries + other.entries;
+        if (newOrders >= orderIds.length) {
+            orderIds = Arrays.copyOf(orderIds, newOrders + 1);
+            orderStart = Arrays.copyOf(orderStart, newOrders + 2);
+        }
+        if (newVariants >= entryStart.length) {
+            discount = Arrays.copyOf(discount, newVariants + 1);
+            entryStart = Arrays.copyOf(entryStart, newVariants + 2);
+        }
+        if (newEntries > methodId.length) {
+            methodId = Arrays.copyOf(methodId, newEntries);
+            amount = Arrays.copyOf(amount, newEntries);
+        }
+
+        System.arraycopy(other.orderIds, 0, orderIds, orders, other.orders);
+        for (int i = 0; i <= other.orders; i++) {
+            orderStart[orders + i] = other.orderStart[i] + variants;
+        }
+        System.arraycopy(other.discount, 0, discount, variants, other.variants);
+        for (int v = 0; v <= other.variants; v++) {
+            entryStart[variants + v] = other.entryStart[v] + entries;
+        }
+        System.arraycopy(other.methodId, 0, methodId, entries, other.entries);
+        System.arraycopy(other.amount, 0, amount, entries, other.entries);
+
+        orders = newOrders;
+        variants = newVariants;
+        entries = newEntries;
+    }
+}
@@ -0,0 +1,237 @@
+package com.optimusprice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.ortools.linearsolver.MPConstraint;
+import com.google.ortools.linearsolver.MPSolver;
+import com.google.ortools.linearsolver.MPVariable;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+
+import lombok.Value;
+
+/**
+ * Answers what-if questions about payment method limits ("how much more discount if the points balance were 20%
+ * higher?") on one model built once. A scenario only changes the right-hand sides of the limit constraints, and every
+ * re-solve is warm-started from the previous solution, so a sweep over many scenarios costs far less than as many cold
+ * solves.
+ * <p>
+ * Two exact shortcuts skip the solver entirely. A scenario that only lowers limits, under which the previous solution
+ * still fits, keeps that solution as its optimum. And since the best discount never decreases as one limit grows, a
+ * sweep over that limit that finds the same discount at two limits fills every limit between them without solving.
+ * <p>
+ * Variants are generated once, against the highest limit any scenario may use for each method ({@code ceilings}), so
+ * that variants which only fit under a raised limit exist in the model; under a lower limit the constraint itself rules
+ * them out.
+ */
+public class WhatIfAnalyzer implements AutoCloseable {
+    private static final double EPS = 1e-9;
+
+    private final Map<String, PaymentMethod> paymentMethods;
+    private final Map<String, Double> ceilings;
+    private final Map<String, Integer> methodIndex = new LinkedHashMap<>();
+    private final MPSolver solver;
+    private final MPConstraint[] limits;
+    private final MPVariable[] vars;
+    private double[] previous; // Solution of the last feasible scenario, null before the first one
+    private double[] previousLimits; // Limits of the last feasible scenario, indexed by method
+    private double[] previousUsage; // Amount the last feasible solution places on every method
+    private double previousObjective;
+    private int solves; // Scenarios that needed the solver
+
+    /**
+     * Discount reachable under one scenario.
+     */
+    @Value
+    public static class Point {
+        double limit; // Limit of the swept method
+        double discount; // Best total discount, NaN if no assignment pays for every order
+    }
+
+    /**
+     * Builds the model for a wallet.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Payment methods with their base limits; left untouched
+     * @param ceilings
+     *            Highest limit any scenario will use, keyed by method ID; methods not listed never exceed their base
+     *            limit
+     */
+    public WhatIfAnalyzer(List<Order> orders, Map<String, PaymentMethod> paymentMethods, Map<String, Double> ceilings) {
+        SolverEngine.loadNativeLibraries();
+        this.paymentMethods = paymentMethods;
+        this.ceilings = ceilings;
+
+        Map<String, PaymentMethod> widest = new LinkedHashMap<>();
+        for (Map.Entry<String, PaymentMethod> entry : paymentMethods.entrySet()) {
+            PaymentMethod pm = entry.getValue();
+            methodIndex.put(entry.getKey(), methodIndex.size());
+            widest.put(entry.getKey(), new PaymentMethod(pm.getId(), pm.getDiscount(),
+                    Math.max(pm.getLimit(), ceilings.getOrDefault(entry.getKey(), pm.getLimit()))));
+        }
+
+        SolverService service = new SolverService(orders, widest);
+        this.solver = MPSolver.createSolver("SCIP");
+        MPVariable[][] rows = service.buildModel(solver, service.generateTable(), null);
+        this.vars = Arrays.stream(rows).flatMap(Arrays::stream).toArray(MPVariable[]::new);
+        // buildModel creates the limit constraints first, one per method in wallet order
+        this.limits = Arrays.copyOf(solver.constraints(), paymentMethods.size());
+    }
+
+    /**
+     * Builds the model once and sweeps the limit of one method.
+     *
+     * @param orders
+     *            Orders to pay for
+     * @param paymentMethods
+     *            Payment methods with their base limits; left untouched
+     * @param methodId
+     *            Method whose limit is varied
+     * @param scenarioLimits
+     *            Limits to evaluate
+     *
+     * @return Discount-versus-limit curve, ascending by limit
+     */
+    public static List<Point> curve(List<Order> orders, Map<String, PaymentMethod> paymentMethods, String methodId,
+            double... scenarioLimits) {
+        double ceiling = Arrays.stream(scenarioLimits).max().orElse(0);
+        try (WhatIfAnalyzer analyzer = new WhatIfAnalyzer(orders, paymentMethods, Map.of(methodId, ceiling))) {
+            return analyzer.sweep(methodId, scenarioLimits);
+        }
+    }
+
+    /**
+     * Evaluates the limit of one method at several values, the others staying at their base limits. The extremes are
+     * solved first and the range is then bisected; a range whose ends have the same discount is filled without solving.
+     *
+     * @param methodId
+     *            Method whose limit is varied
+     * @param scenarioLimits
+     *            Limits to evaluate
+     *
+     * @return Discount-versus-limit curve, ascending by limit
+     */
+    public List<Point> sweep(String methodId, double... scenarioLimits) {
+        double[] sorted = scenarioLimits.clone();
+        Arrays.sort(sorted);
+        double[] discount = new double[sorted.length];
+        if (sorted.length > 0) {
+            int last = sorted.length - 1;
+            discount[last] = solve(Map.of(methodId, sorted[last]));
+            discount[0] = solve(Map.of(methodId, sorted[0]));
+            bisect(methodId, sorted, discount, 0, last);
+        }
+
+        List<Point> curve = new ArrayList<>(sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            curve.add(new Point(sorted[i], discount[i]));
+        }
+        return curve;
+    }
+
+    /**
+     * Fills the discounts strictly between two evaluated limits of a sweep.
+     *
+     * @param methodId
+     *            Method whose limit is varied
+     * @param limits
+     *            Limits of the sweep, ascending
+     * @param discount
+     *            Discount of every limit, known at lo and hi
+     * @param lo
+     *            Index of the lower evaluated limit
+     * @param hi
+     *            Index of the higher evaluated limit
+     */
+    private void bisect(String methodId, double[] limits, double[] discount, int lo, int hi) {
+        if (hi - lo < 2) {
+            return;
+        }
+        // An infeasible top means everything below is infeasible too; equal ends mean a plateau in between
+        if (Double.isNaN(discount[hi]) || discount[hi] - discount[lo] <= EPS) {
+            Arrays.fill(discount, lo + 1, hi, discount[hi]);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        discount[mid] = solve(Map.of(methodId, limits[mid]));
+        bisect(methodId, limits, discount, lo, mid);
+        bisect(methodId, limits, discount, mid, hi);
+    }
+
+    /**
+     * Evaluates one scenario.
+     *
+     * @param scenario
+     *            Limits that differ from the base wallet, keyed by method ID
+     *
+     * @return Best total discount under the scenario, NaN if no assignment pays for every order
+     */
+    public double solve(Map<String, Double> scenario) {
+        for (String id : scenario.keySet()) {
+            if (!methodIndex.containsKey(id)) {
+                throw new IllegalArgumentException("Unknown payment method: " + id);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : methodIndex.entrySet()) {
+            String id = entry.getKey();
+            double limit = scenario.getOrDefault(id, paymentMethods.get(id).getLimit());
+            double ceiling = Math.max(paymentMethods.get(id).getLimit(), ceilings.getOrDefault(id, 0.0));
+            if (limit > ceiling) {
+                throw new IllegalArgumentException("Limit of " + id + " above the analyzer's ceiling: " + limit);
+            }
+            limits[entry.getValue()].setUb(limit);
+        }
+
+        double[] scenarioLimits = new double[limits.length];
+        boolean shrunk = previous != null;
+        for (int m = 0; m < limits.length; m++) {
+            scenarioLimits[m] = limits[m].ub();
+            shrunk = shrunk && scenarioLimits[m] <= previousLimits[m] && previousUsage[m] <= scenarioLimits[m] + EPS;
+        }
+        if (shrunk) {
+            return previousObjective; // The previous optimum is still feasible and nothing better became feasible
+        }
+
+        if (previous != null) {
+            solver.setHint(vars, previous);
+        }
+        solves++;
+        MPSolver.ResultStatus status = solver.solve();
+        if (status != MPSolver.ResultStatus.OPTIMAL) {
+            return Double.NaN;
+        }
+
+        previous = new double[vars.length];
+        for (int v = 0; v < vars.length; v++) {
+            previous[v] = Math.round(vars[v].solutionValue());
+        }
+        previousLimits = scenarioLimits;
+        previousUsage = Arrays.copyOf(solver.computeConstraintActivities(), limits.length);
+        previousObjective = solver.objective().value();
+        return previousObjective;
+    }
+
+    /**
+     * Returns how many scenarios so far needed the solver; the others were answered by the shortcuts.
+     *
+     * @return Number of solver calls
+     */
+    public int getSolves() {
+        return solves;
+    }
+
+    /**
+     * Frees the native model.
+     */
+    @Override
+    public void close() {
+        solver.delete();
+    }
+}
@@ -0,0 +1,122 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.optimusprice.io.AssignmentWriter;
+import com.optimusprice.io.BinaryAssignmentReader;
+import com.optimusprice.model.Assignment;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for streaming per-order assignments.
+ */
+public class AssignmentWriterTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Solves the SolverServiceTest problem while streaming every order's split into the given format.
+     */
+    private List<Assignment> solveInto(Path file, AssignmentWriter.Format format) throws IOException {
+        Map<String, PaymentMethod> paymentMethods = new HashMap<>();
+        paymentMethods.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 100.0));
+        paymentMethods.put("KARTA2", new PaymentMethod("KARTA2", 15.0, 100.0));
+        paymentMethods.put("PUNKTY", new PaymentMethod("PUNKTY", 10.0, 50.0));
+        List<Order> orders = List.of(new Order("ORDER1", 30.0, List.of("KARTA1")),
+                new Order("ORDER2", 40.0, List.of("KARTA2")), new Order("ORDER\"3", 10.0, List.of("KARTA1", "KARTA2")),
+                new Order("ORDER4", 50.0, List.of()));
+
+        List<Assignment> expected = new ArrayList<>();
+        SolverService service = new SolverService(orders, paymentMethods);
+        try (AssignmentWriter writer = new AssignmentWriter(
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE), format,
+                List.copyOf(paymentMethods.keySet()))) {
+            service.setAssignmentSink((orderId, payments, discount) -> {
+                expected.add(new Assignment(orderId, Map.copyOf(payments), discount));
+                writer.accept(orderId, payments, discount);
+            });
+            service.solve();
+        }
+        return expected;
+    }
+
+    /**
+     * Verifies that the JSON-lines output holds one parsable object per order.
+     */
+    @Test
+    public void testJsonLines() throws IOException {
+        Path file = dir.resolve("assignments.jsonl");
+        List<Assignment> expected = solveInto(file, AssignmentWriter.Format.JSON_LINES);
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(4);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode node = mapper.readTree(lines.get(i));
+            assertThat(node.get("orderId").asText()).isEqualTo(expected.get(i).getOrderId());
+            assertThat(node.get("discount").asDouble()).isEqualTo(expected.get(i).getDiscount());
+            for (Map.Entry<String, Double> payment : expected.get(i).getPayments().entrySet()) {
+                assertThat(node.get("payments").get(payment.getKey()).asDouble()).isEqualTo(payment.getValue());
+            }
+        }
+    }
+
+    /**
+     * Verifies that binary records read back to the same assignments.
+     */
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        Path file = dir.resolve("assignments.bin");
+        List<Assignment> expected = solveInto(file, AssignmentWriter.Format.BINARY);
+
+        List<Assignment> read = new ArrayList<>();
+        try (BinaryAssignmentReader reader = new BinaryAssignmentReader(FileChannel.open(file))) {
+            reader.forEachRemaining(read::add);
+        }
+        assertThat(read).isEqualTo(expected);
+    }
+
+    /**
+     * Verifies that records larger in total than the internal buffer are flushed correctly.
+     */
+    @Test
+    public void testManyRecords() throws IOException {
+        Path file = dir.resolve("many.bin");
+        try (AssignmentWriter writer = new AssignmentWriter(
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                AssignmentWriter.Format.BINARY, List.of("KARTA1", "PUNKTY"))) {
+            for (int i = 0; i < 20_000; i++) {
+                writer.accept("ORDER" + i, Map.of("KARTA1", i * 0.5), i * 0.01);
+            }
+        }
+
+        int count = 0;
+        try (BinaryAssignmentReader reader = new BinaryAssignmentReader(FileChannel.open(file))) {
+            while (reader.hasNext()) {
+                Assignment a = reader.next();
+                assertThat(a.getOrderId()).isEqualTo("ORDER" + count);
+                assertThat(a.getPayments().get("KARTA1")).isEqualTo(count * 0.5);
+                count++;
+            }
+        }
+        assertThat(count).isEqualTo(20_000);
+    }
+}
@@ -0,0 +1,181 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.exception.NoOptimalSolutionException;
+import com.optimusprice.metrics.SolveMetrics;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.service.Backend;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for the pluggable solver backends.
+ */
+public class BackendTest {
+
+    /**
+     * Solves with one backend and returns the total discount.
+     */
+    private static double discount(List<Order> orders, Map<String, PaymentMethod> paymentMethods, Backend backend) {
+        SolverService service = new SolverService(orders, paymentMethods);
+        service.setBackend(backend);
+        service.solve();
+        double value = orders.stream().mapToDouble(Order::getValue).sum();
+        double spent = paymentMethods.values().stream().mapToDouble(pm -> pm.getLimit() - pm.getRemainingLimit()).sum();
+        for (PaymentMethod pm : paymentMethods.values()) {
+            assertThat(pm.getRemainingLimit()).as(backend + " " + pm.getId()).isGreaterThanOrEqualTo(-1e-6);
+        }
+        return value - spent;
+    }
+
+    /**
+     * Verifies that every backend finds the optimal discount of the SolverServiceTest problem.
+     */
+    @Test
+    public void testBackendsAgreeOnFixture() {
+        for (Backend backend : Backend.values()) {
+            assertThat(discount(TestFixtures.sampleOrders(), TestFixtures.sampleWallet(), backend)).as(backend.name())
+                    .isCloseTo(15.5, within(1e-6));
+        }
+    }
+
+    /**
+     * Verifies that the fixed-point CP-SAT model respects the real limits and loses at most rounding on a random
+     * instance with binding limits.
+     */
+    @Test
+    public void testCpSatMatchesScipOnRandomInstance() {
+        Random random = new Random(11);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            orders.add(
+                    new Order("ORDER" + i, 10 + random.nextInt(20000) / 100.0, List.of("KARTA" + random.nextInt(4))));
+        }
+        Map<String, PaymentMethod> scip = new LinkedHashMap<>();
+        Map<String, PaymentMethod> cpSat = new LinkedHashMap<>();
+        for (int m = 0; m < 4; m++) {
+            scip.put("KARTA" + m, new PaymentMethod("KARTA" + m, 5 + 3 * m, 1500.0));
+            cpSat.put("KARTA" + m, new PaymentMethod("KARTA" + m, 5 + 3 * m, 1500.0));
+        }
+        scip.put("PUNKTY", new PaymentMethod("PUNKTY", 12.0, 400.0));
+        cpSat.put("PUNKTY", new PaymentMethod("PUNKTY", 12.0, 400.0));
+        scip.put("GOTOWKA", new PaymentMethod("GOTOWKA", 0.0, 100000.0));
+        cpSat.put("GOTOWKA", new PaymentMethod("GOTOWKA", 0.0, 100000.0));
+
+        double exact = discount(orders, scip, Backend.SCIP);
+        assertThat(discount(orders, cpSat, Backend.CP_SAT)).isCloseTo(exact, within(0.05));
+    }
+
+    /**
+     * Verifies that the pure-Java search finds the same optimum as SCIP on small wallets with binding limits and
+     * reports infeasible ones the same way.
+     */
+    @Test
+    public void testExactMatchesScip() {
+        Random random = new Random(5);
+        for (int round = 0; round < 5; round++) {
+            List<Order> orders = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                orders.add(new Order("ORDER" + i, 10 + random.nextInt(20000) / 100.0,
+                        List.of("KARTA" + random.nextInt(2))));
+            }
+            Map<String, PaymentMethod> scip = new LinkedHashMap<>();
+            Map<String, PaymentMethod> exact = new LinkedHashMap<>();
+            for (Map<String, PaymentMethod> wallet : List.of(scip, exact)) {
+                wallet.put("KARTA0", new PaymentMethod("KARTA0", 10.0, 600.0));
+                wallet.put("KARTA1", new PaymentMethod("KARTA1", 20.0, 500.0));
+                wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 15.0, 300.0));
+            }
+
+            assertThat(discount(orders, exact, Backend.EXACT)).isCloseTo(discount(orders, scip, Backend.SCIP),
+                    within(1e-2));
+        }
+
+        Map<String, PaymentMethod> tiny = new HashMap<>();
+        tiny.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 1.0));
+        SolverService service = new SolverService(TestFixtures.sampleOrders(), tiny);
+        service.setBackend(Backend.EXACT);
+        assertThatThrownBy(service::solve).isInstanceOf(NoOptimalSolutionException.class);
+    }
+
+    /**
+     * Verifies that when the pure-Java search runs out of nodes, only the SCIP fallback's model and outcome end up in
+     * the metrics.
+     */
+    @Test
+    public void testExactFallbackIsRecordedOnce() {
+        List<SolverService> services = new ArrayList<>();
+        for (Backend backend : List.of(Backend.EXACT, Backend.SCIP)) {
+            Random random = new Random(1);
+            List<Order> orders = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                orders.add(new Order("ORDER" + i, 10 + random.nextInt(20000) / 100.0,
+                        List.of("KARTA" + random.nextInt(3), "KARTA" + random.nextInt(3))));
+            }
+            Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+            for (int m = 0; m < 3; m++) {
+                wallet.put("KARTA" + m, new PaymentMethod("KARTA" + m, 5 + 4 * m, 750.0));
+            }
+            wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 12.0, 300.0));
+            SolverService service = new SolverService(orders, wallet);
+            service.setBackend(backend);
+            service.solve();
+            services.add(service);
+        }
+
+        SolveMetrics fallback = services.get(0).getLastMetrics();
+        SolveMetrics scip = services.get(1).getLastMetrics();
+        assertThat(fallback.getStatus()).isEqualTo("OPTIMAL");
+        assertThat(fallback.getGap()).isZero();
+        assertThat(fallback.getVariables()).isEqualTo(scip.getVariables());
+        assertThat(fallback.getConstraints()).isEqualTo(scip.getConstraints());
+        assertThat(fallback.getObjective()).isCloseTo(scip.getObjective(), within(1e-6));
+    }
+
+    /**
+     * Verifies that column generation reaches the optimum of the full model, up to SCIP's default relative gap, on a
+     * large catalog of cards while building a much smaller integer model.
+     */
+    @Test
+    public void testColumnGenerationMatchesScip() {
+        Random random = new Random(9);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            orders.add(new Order("ORDER" + i, 10 + random.nextInt(20000) / 100.0,
+                    List.of("KARTA" + random.nextInt(30), "KARTA" + random.nextInt(30))));
+        }
+        List<Map<String, PaymentMethod>> wallets = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+            for (int m = 0; m < 30; m++) {
+                wallet.put("KARTA" + m, new PaymentMethod("KARTA" + m, 5 + m % 10, 300.0 + 50 * (m % 7)));
+            }
+            wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 12.0, 800.0));
+            wallet.put("GOTOWKA", new PaymentMethod("GOTOWKA", 0.0, 100000.0));
+            wallets.add(wallet);
+        }
+
+        double exact = discount(orders, wallets.get(1), Backend.SCIP);
+        assertThat(discount(orders, wallets.get(0), Backend.COLUMN_GENERATION)).isCloseTo(exact, within(exact * 1e-4));
+
+        SolverService full = new SolverService(orders, wallets.get(2));
+        full.solve();
+        SolverService generated = new SolverService(orders, wallets.get(3));
+        generated.setBackend(Backend.COLUMN_GENERATION);
+        generated.solve();
+        assertThat(generated.getLastMetrics().getVariables()).isLessThan(full.getLastMetrics().getVariables() / 2);
+        assertThat(generated.getLastMetrics().isPricingCutShort()).isFalse();
+    }
+}
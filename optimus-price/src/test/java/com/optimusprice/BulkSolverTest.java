@@ -0,0 +1,129 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.optimusprice.io.ProblemReader;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.Problem;
+import com.optimusprice.model.ProblemResult;
+import com.optimusprice.service.BulkSolver;
+
+/**
+ * Unit tests for solving many independent problems in bulk.
+ */
+public class BulkSolverTest {
+
+    private BulkSolver solver;
+
+    @BeforeEach
+    public void setUp() {
+        solver = new BulkSolver("SCIP", 3, 4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        solver.close();
+    }
+
+    /**
+     * Builds the problem of SolverServiceTest, or an infeasible one with a tiny wallet.
+     */
+    private static Problem problem(String id, boolean feasible) {
+        List<Order> orders = List.of(new Order("ORDER1", 30.0, List.of("KARTA1")),
+                new Order("ORDER2", 40.0, List.of("KARTA2")), new Order("ORDER3", 10.0, List.of("KARTA1", "KARTA2")),
+                new Order("ORDER4", 50.0, List.of()));
+        List<PaymentMethod> wallet = feasible ? List.of(new PaymentMethod("KARTA1", 5.0, 100.0),
+                new PaymentMethod("KARTA2", 15.0, 100.0), new PaymentMethod("PUNKTY", 10.0, 50.0))
+                : List.of(new PaymentMethod("KARTA1", 5.0, 1.0));
+        return new Problem(id, orders, wallet);
+    }
+
+    /**
+     * Verifies that results come back in input order, with failures reported per problem.
+     */
+    @Test
+    public void testResultsInInputOrder() {
+        List<Problem> problems = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            problems.add(problem("CUSTOMER" + i, i % 7 != 3));
+        }
+
+        List<ProblemResult> results = solver.solveAll(problems);
+
+        assertThat(results).hasSize(problems.size());
+        for (int i = 0; i < results.size(); i++) {
+            ProblemResult result = results.get(i);
+            assertThat(result.getId()).isEqualTo("CUSTOMER" + i);
+            if (i % 7 == 3) {
+                assertThat(result.getResult()).isNull();
+                assertThat(result.getError()).isNotBlank();
+            } else {
+                assertThat(result.getError()).isNull();
+                assertThat(result.getResult().getTotalDiscount()).isCloseTo(15.5, within(1e-6));
+            }
+        }
+    }
+
+    /**
+     * Verifies that the input is never read more than the in-flight bound ahead of the consumer.
+     */
+    @Test
+    public void testBackpressure() {
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        List<ProblemResult> delivered = new ArrayList<>();
+        Iterator<Problem> input = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return read.get() < 40;
+            }
+
+            @Override
+            public Problem next() {
+                int index = read.getAndIncrement();
+                maxAhead.accumulateAndGet(read.get() - delivered.size(), Math::max);
+                return problem("CUSTOMER" + index, true);
+            }
+        };
+
+        solver.solveAll(input, delivered::add);
+
+        assertThat(delivered).hasSize(40);
+        assertThat(maxAhead.get()).isLessThanOrEqualTo(5);
+    }
+
+    /**
+     * Verifies that a JSON-lines file is read one problem per line.
+     */
+    @Test
+    public void testReadJsonLines(@TempDir Path dir) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        File file = dir.resolve("problems.jsonl").toFile();
+        Files.writeString(file.toPath(), mapper.writeValueAsString(problem("A", true)) + "\n"
+                + mapper.writeValueAsString(problem("B", false)) + "\n");
+
+        try (ProblemReader reader = new ProblemReader(file)) {
+            List<ProblemResult> results = new ArrayList<>();
+            solver.solveAll(reader, results::add);
+            assertThat(results).extracting(ProblemResult::getId).containsExactly("A", "B");
+            assertThat(results.get(1).getError()).isNotBlank();
+        }
+    }
+}
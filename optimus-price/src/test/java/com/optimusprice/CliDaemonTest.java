@@ -0,0 +1,148 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.optimusprice.server.CliClient;
+import com.optimusprice.server.CliDaemon;
+
+/**
+ * Unit tests for the CLI daemon and its client.
+ */
+public class CliDaemonTest {
+
+    @TempDir
+    Path directory;
+
+    private Path socket;
+    private CliDaemon daemon;
+
+    /**
+     * Starts a daemon running the one-shot CLI on a socket in a temporary directory.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        socket = directory.resolve("daemon.sock");
+        daemon = new CliDaemon(socket, App::run);
+        daemon.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        daemon.close();
+    }
+
+    /**
+     * Verifies that a forwarded invocation resolves relative paths against the client's directory and prints the same
+     * result as the one-shot CLI.
+     */
+    @Test
+    public void testForwardedSolve() throws Exception {
+        Files.writeString(directory.resolve("orders.json"),
+                "[{\"id\": \"ORDER1\", \"value\": \"100.00\", \"promotions\": [\"mZysk\"]},"
+                        + "{\"id\": \"ORDER2\", \"value\": \"200.00\", \"promotions\": [\"BosBankrut\"]},"
+                        + "{\"id\": \"ORDER3\", \"value\": \"150.00\", \"promotions\": [\"mZysk\", \"BosBankrut\"]},"
+                        + "{\"id\": \"ORDER4\", \"value\": \"50.00\"}]");
+        Files.writeString(directory.resolve("paymentmethods.json"),
+                "[{\"id\": \"PUNKTY\", \"discount\": \"15\", \"limit\": \"100.00\"},"
+                        + "{\"id\": \"mZysk\", \"discount\": \"10\", \"limit\": \"180.00\"},"
+                        + "{\"id\": \"BosBankrut\", \"discount\": \"5\", \"limit\": \"200.00\"}]");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = CliClient.forward(socket, directory, List.of("orders.json", "paymentmethods.json"),
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        App.run(directory, List.of("orders.json", "paymentmethods.json"),
+                new PrintStream(direct, true, StandardCharsets.UTF_8));
+
+        assertThat(code).isZero();
+        assertThat(err.size()).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("PUNKTY 100.00")
+                .isEqualTo(direct.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Verifies that a failing invocation reports its error output, including the exception, to the client with a
+     * non-zero exit code and without stopping the daemon.
+     */
+    @Test
+    public void testForwardedFailure() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+        PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+
+        int code = CliClient.forward(socket, directory, List.of("missing.json", "paymentmethods.json"), outStream,
+                errStream);
+
+        assertThat(code).isEqualTo(1);
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("ERROR: Orders file not found: missing.json",
+                "MissingFileException");
+
+        out.reset();
+        assertThat(CliClient.forward(socket, directory, List.of(), outStream, errStream)).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("Usage:");
+    }
+
+    /**
+     * Verifies that the daemon solves with the backend forwarded by the client rather than with its own.
+     */
+    @Test
+    public void testForwardedBackend() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+        PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+
+        int code = CliClient.forward(socket, directory,
+                List.of(App.BACKEND_ARGUMENT + "GUROBI", "orders.json", "paymentmethods.json"), outStream, errStream);
+
+        assertThat(code).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("Unknown backend GUROBI");
+    }
+
+    /**
+     * Verifies that a client told to wait connects to a daemon that starts listening after the client was started.
+     */
+    @Test
+    public void testClientWaitsForDaemon() throws Exception {
+        Path late = directory.resolve("late.sock");
+        ExecutorService starter = Executors.newSingleThreadExecutor();
+        Future<CliDaemon> started = starter.submit(() -> {
+            Thread.sleep(300);
+            CliDaemon lateDaemon = new CliDaemon(late, App::run);
+            lateDaemon.start();
+            return lateDaemon;
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+        try {
+            assertThat(CliClient.forward(late, 10_000, directory, List.of(), outStream, outStream)).isZero();
+            assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("Usage:");
+        } finally {
+            started.get().close();
+            starter.shutdown();
+        }
+        assertThatThrownBy(() -> CliClient.forward(late, directory, List.of(), outStream, outStream))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,151 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.service.IncrementalSolver;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for incremental re-optimization of orders added and cancelled one at a time.
+ */
+public class IncrementalSolverTest {
+
+    private List<Order> orders;
+
+    @BeforeEach
+    public void setUp() {
+        orders = TestFixtures.randomOrders(new Random(3), 30, 3, 1);
+    }
+
+    /**
+     * Verifies that adding orders one at a time ends with the same discount and remaining limits as solving the whole
+     * set from scratch.
+     */
+    @Test
+    public void testAddingOrdersMatchesFullSolve() {
+        Map<String, PaymentMethod> live = TestFixtures.randomWallet(120.0, 3, 5.0, 300.0);
+
+        try (IncrementalSolver solver = new IncrementalSolver(live)) {
+            for (Order order : orders) {
+                assertThat(solver.add(order).getOrderId()).isEqualTo(order.getId());
+            }
+            SolveResult result = solver.current();
+
+            Map<String, PaymentMethod> expected = new SolverService(orders,
+                    TestFixtures.randomWallet(120.0, 3, 5.0, 300.0)).solve();
+            double expectedDiscount = orders.stream().mapToDouble(Order::getValue).sum()
+                    - expected.values().stream().mapToDouble(pm -> pm.getLimit() - pm.getRemainingLimit()).sum();
+
+            assertThat(result.getAssignments()).hasSize(orders.size());
+            assertThat(result.getTotalDiscount()).isCloseTo(expectedDiscount, within(1e-6));
+            for (PaymentMethod pm : live.values()) {
+                assertThat(pm.getRemainingLimit()).isGreaterThanOrEqualTo(-1e-6);
+            }
+        }
+    }
+
+    /**
+     * Verifies that cancelling orders re-optimizes the rest as if they had been solved on their own.
+     */
+    @Test
+    public void testCancellingOrdersMatchesFullSolve() {
+        Map<String, PaymentMethod> live = TestFixtures.randomWallet(120.0, 3, 5.0, 300.0);
+
+        try (IncrementalSolver solver = new IncrementalSolver(live)) {
+            orders.forEach(solver::add);
+            List<Order> kept = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                if (i % 3 == 0) {
+                    assertThat(solver.cancel(orders.get(i).getId())).isTrue();
+                } else {
+                    kept.add(orders.get(i));
+                }
+            }
+            assertThat(solver.cancel("MISSING")).isFalse();
+
+            SolveResult result = solver.current();
+            Map<String, PaymentMethod> expected = new SolverService(kept,
+                    TestFixtures.randomWallet(120.0, 3, 5.0, 300.0)).solve();
+            double expectedDiscount = kept.stream().mapToDouble(Order::getValue).sum()
+                    - expected.values().stream().mapToDouble(pm -> pm.getLimit() - pm.getRemainingLimit()).sum();
+
+            assertThat(result.getAssignments()).hasSize(kept.size());
+            assertThat(result.getTotalDiscount()).isCloseTo(expectedDiscount, within(1e-6));
+        }
+    }
+
+    /**
+     * Verifies that every delta settled by a hinted re-solve of the coupled orders ends with the discount of a cold
+     * solve of the same orders.
+     */
+    @Test
+    public void testHintedResolveMatchesColdSolve() {
+
+        try (IncrementalSolver solver = new IncrementalSolver(TestFixtures.randomWallet(120.0, 3, 5.0, 300.0))) {
+            int resolved = 0;
+            for (int i = 0; i < orders.size(); i++) {
+                int before = solver.getSolves();
+                solver.add(orders.get(i));
+                if (solver.getSolves() == before) {
+                    continue;
+                }
+                resolved++;
+
+                List<Order> added = orders.subList(0, i + 1);
+                Map<String, PaymentMethod> cold = new SolverService(added,
+                        TestFixtures.randomWallet(120.0, 3, 5.0, 300.0)).solve();
+                double coldDiscount = added.stream().mapToDouble(Order::getValue).sum()
+                        - cold.values().stream().mapToDouble(pm -> pm.getLimit() - pm.getRemainingLimit()).sum();
+                assertThat(solver.current().getTotalDiscount()).as("after " + added.size() + " orders")
+                        .isCloseTo(coldDiscount, within(1e-6));
+            }
+            assertThat(resolved).isGreaterThan(1);
+        }
+    }
+
+    /**
+     * Verifies that a re-solve covers only the orders coupled to the delta through a binding limit, that cancelled
+     * orders leave the model, and that orders whose limit stops binding take their best variant without the solver.
+     */
+    @Test
+    public void testResolvesOnlyCoupledOrders() {
+        // Orders of 20 promoted on the scarce KARTA1 compete for it; orders of 80 cannot pay with it at all
+        Map<String, PaymentMethod> live = TestFixtures.randomWallet(0.0, 2, 5.0, 50.0);
+
+        try (IncrementalSolver solver = new IncrementalSolver(live)) {
+            solver.add(new Order("SMALL0", 20.0, List.of("KARTA1")));
+            solver.add(new Order("SMALL1", 20.0, List.of("KARTA1")));
+            for (int i = 0; i < 10; i++) {
+                solver.add(new Order("LARGE" + i, 80.0, List.of("KARTA0")));
+            }
+            assertThat(solver.getSolves()).isZero();
+
+            solver.add(new Order("SMALL2", 20.0, List.of("KARTA1")));
+            assertThat(solver.getSolves()).isEqualTo(1);
+            assertThat(solver.getLastResolvedOrders()).isEqualTo(3);
+            solver.add(new Order("SMALL3", 20.0, List.of("KARTA1")));
+            assertThat(solver.getLastResolvedOrders()).isEqualTo(4);
+
+            solver.cancel("SMALL0");
+            assertThat(solver.getSolves()).isEqualTo(3);
+            assertThat(solver.getLastResolvedOrders()).isEqualTo(3);
+
+            solver.cancel("SMALL1");
+            assertThat(solver.getSolves()).isEqualTo(3);
+            assertThat(solver.current().getTotalDiscount()).isCloseTo(2 * 2.0 + 10 * 4.0, within(1e-6));
+            assertThat(live.get("KARTA1").getRemainingLimit()).isCloseTo(14.0, within(1e-6));
+        }
+    }
+}
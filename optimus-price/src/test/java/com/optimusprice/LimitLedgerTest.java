@@ -0,0 +1,177 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.service.LimitLedger;
+import com.optimusprice.service.SolverEngine;
+
+/**
+ * Unit tests for the lock-free limit ledger.
+ */
+public class LimitLedgerTest {
+
+    private Map<String, PaymentMethod> paymentMethods;
+
+    /**
+     * Prepares the same wallet as SolverServiceTest.
+     */
+    @BeforeEach
+    public void setUp() {
+        paymentMethods = TestFixtures.sampleWallet();
+    }
+
+    /**
+     * Verifies that a reservation takes all of its amounts or none, and that commit and release settle it only once.
+     */
+    @Test
+    public void testReserveCommitRelease() {
+        LimitLedger ledger = new LimitLedger(paymentMethods);
+
+        assertThat(ledger.reserve(Map.of("KARTA1", 40.0, "PUNKTY", 60.0))).isNull();
+        assertThat(ledger.getAvailable("KARTA1")).isEqualTo(100.0);
+
+        LimitLedger.Reservation first = ledger.reserve(Map.of("KARTA1", 40.0, "PUNKTY", 20.005));
+        LimitLedger.Reservation second = ledger.reserve(Map.of("KARTA1", 60.0));
+        assertThat(ledger.getAvailable("KARTA1")).isZero();
+        assertThat(ledger.getAvailable("PUNKTY")).isEqualTo(29.99);
+        assertThat(ledger.snapshot().get("PUNKTY").getLimit()).isEqualTo(29.99);
+
+        assertThat(first.commit()).isTrue();
+        assertThat(first.release()).isFalse();
+        assertThat(second.release()).isTrue();
+        assertThat(second.commit()).isFalse();
+        assertThat(ledger.getAvailable("KARTA1")).isEqualTo(60.0);
+        assertThat(ledger.getCommitted("KARTA1")).isEqualTo(40.0);
+        assertThat(ledger.getCommitted("PUNKTY")).isEqualTo(20.01);
+    }
+
+    /**
+     * Verifies that a single solve spending a method's whole limit reserves it, and that an amount the solver reports
+     * over a whole cent by no more than its feasibility tolerance counts as that cent.
+     */
+    @Test
+    public void testExactExhaustion() {
+        Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+        wallet.put("KARTA1", new PaymentMethod("KARTA1", 10.0, 90.0));
+        wallet.put("KARTA2", new PaymentMethod("KARTA2", 0.0, 1_000.0));
+        LimitLedger ledger = new LimitLedger(wallet);
+        List<Order> orders = List.of(new Order("ORDER1", 60.0, List.of("KARTA1")),
+                new Order("ORDER2", 40.0, List.of("KARTA1")));
+
+        try (SolverEngine engine = new SolverEngine("SCIP", 1)) {
+            LimitLedger.Reservation reservation = engine.solveReserved(orders, ledger);
+            assertThat(reservation.getResult().getTotalDiscount()).isCloseTo(10.0, within(1e-6));
+            assertThat(ledger.getAvailable("KARTA1")).isZero();
+            assertThat(reservation.release()).isTrue();
+        }
+
+        assertThat(ledger.reserve(Map.of("KARTA1", 90.0000009))).isNotNull();
+        assertThat(ledger.getAvailable("KARTA1")).isZero();
+        assertThat(ledger.reserve(Map.of("KARTA2", 999.995))).isNotNull();
+        assertThat(ledger.getAvailable("KARTA2")).isZero();
+    }
+
+    /**
+     * Verifies that large amounts are never reserved for less than they spend: the solver tolerance absorbed near a
+     * whole cent stays under a cent however large the amount.
+     */
+    @Test
+    public void testLargeAmountsRoundUp() {
+        Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+        wallet.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 100_000.0));
+        wallet.put("KARTA2", new PaymentMethod("KARTA2", 5.0, 100_000.0));
+        LimitLedger ledger = new LimitLedger(wallet);
+
+        assertThat(ledger.reserve(Map.of("KARTA1", 20_000.015))).isNotNull();
+        assertThat(ledger.getAvailable("KARTA1")).isEqualTo(79_999.98);
+        assertThat(ledger.reserve(Map.of("KARTA2", 99_999.995))).isNotNull();
+        assertThat(ledger.getAvailable("KARTA2")).isZero();
+        assertThat(ledger.reserve(Map.of("KARTA1", 79_999.98 + 1e-4))).isNotNull();
+        assertThat(ledger.getAvailable("KARTA1")).isZero();
+    }
+
+    /**
+     * Verifies that racing reservations never overdraw a method and that no cent is lost.
+     */
+    @Test
+    public void testConcurrentReservations() throws Exception {
+        LimitLedger ledger = new LimitLedger(paymentMethods);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> granted = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                granted.add(threads.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        LimitLedger.Reservation r = ledger.reserve(Map.of("KARTA1", 0.07, "PUNKTY", 0.03));
+                        if (r == null) {
+                            continue;
+                        }
+                        if (i % 3 == 0) {
+                            r.release();
+                        } else {
+                            r.commit();
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int committed = 0;
+            for (Future<Integer> f : granted) {
+                committed += f.get();
+            }
+
+            assertThat(ledger.getCommitted("KARTA1")).isCloseTo(committed * 0.07, within(1e-6));
+            assertThat(ledger.getCommitted("KARTA1") + ledger.getAvailable("KARTA1")).isCloseTo(100.0, within(1e-6));
+            assertThat(ledger.getCommitted("PUNKTY") + ledger.getAvailable("PUNKTY")).isCloseTo(50.0, within(1e-6));
+            assertThat(ledger.getAvailable("KARTA1")).isLessThan(0.07);
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that concurrent solves on one wallet each get a feasible assignment and together stay within the limits.
+     */
+    @Test
+    public void testConcurrentSolvesOnSharedWallet() throws Exception {
+        LimitLedger ledger = new LimitLedger(paymentMethods);
+        List<Order> orders = List.of(new Order("ORDER1", 30.0, List.of("KARTA1")),
+                new Order("ORDER2", 40.0, List.of("KARTA2")));
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        try (SolverEngine engine = new SolverEngine("SCIP", 3)) {
+            List<Future<LimitLedger.Reservation>> reservations = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                reservations.add(threads.submit(() -> engine.solveReserved(orders, ledger)));
+            }
+            for (Future<LimitLedger.Reservation> f : reservations) {
+                LimitLedger.Reservation reservation = f.get();
+                assertThat(reservation.getResult().getAssignments()).hasSize(2);
+                reservation.commit();
+            }
+
+            for (String id : paymentMethods.keySet()) {
+                assertThat(ledger.getCommitted(id) + ledger.getAvailable(id))
+                        .isCloseTo(paymentMethods.get(id).getLimit(), within(1e-6));
+                assertThat(ledger.getAvailable(id)).isGreaterThanOrEqualTo(0);
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.optimusprice.io.OrderReader;
+import com.optimusprice.model.Order;
+
+/**
+ * Unit tests for streaming order ingestion.
+ */
+public class OrderReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Verifies that orders are parsed one by one, accepting numeric strings, missing promotions and unknown fields.
+     */
+    @Test
+    public void testReadOrders() throws IOException {
+        File file = tempDir.resolve("orders.json").toFile();
+        Files.writeString(file.toPath(), """
+                [
+                  {"id": "ORDER1", "value": "150.00", "promotions": ["mZysk"], "note": {"a": [1, 2]}},
+                  {"id": "ORDER2", "value": 200, "promotions": ["mZysk", "BosBankrut"]},
+                  {"id": "ORDER3", "value": "50.00"}
+                ]
+                """);
+
+        List<Order> orders = new ArrayList<>();
+        try (OrderReader reader = new OrderReader(file)) {
+            reader.forEachRemaining(orders::add);
+        }
+
+        assertThat(orders).extracting(Order::getId).containsExactly("ORDER1", "ORDER2", "ORDER3");
+        assertThat(orders).extracting(Order::getValue).containsExactly(150.0, 200.0, 50.0);
+        assertThat(orders.get(1).getPromotions()).containsExactly("mZysk", "BosBankrut");
+        assertThat(orders.get(2).getPromotions()).isEmpty();
+        assertThat(orders.get(1).getPromotions().get(0)).isSameAs(orders.get(0).getPromotions().get(0));
+    }
+
+    /**
+     * Verifies that an empty array yields no orders.
+     */
+    @Test
+    public void testReadEmptyArray() throws IOException {
+        File file = tempDir.resolve("empty.json").toFile();
+        Files.writeString(file.toPath(), "[]");
+
+        try (OrderReader reader = new OrderReader(file)) {
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.service.RollingHorizonSolver;
+
+/**
+ * Unit tests for chunked solving with limit budgeting.
+ */
+public class RollingHorizonSolverTest {
+
+    private Map<String, PaymentMethod> wallet;
+    private List<Order> orders;
+
+    /**
+     * Prepares a batch whose promoted cards and points are too small for every order to get its best variant.
+     */
+    @BeforeEach
+    public void setUp() {
+        wallet = TestFixtures.randomWallet(400.0, 4, 2.0, 1_000.0);
+        orders = TestFixtures.randomOrders(new Random(5), 120, 4, 2);
+    }
+
+    /**
+     * Verifies that a chunked solve pays every order exactly once, stays within the limits and reports the discount it
+     * emitted.
+     */
+    @Test
+    public void testChunkedSolveIsFeasible() {
+        RollingHorizonSolver solver = new RollingHorizonSolver(wallet, 25);
+        Map<String, Double> paid = new LinkedHashMap<>();
+        double[] emitted = new double[1];
+        solver.setAssignmentSink((orderId, payments, discount) -> {
+            assertThat(paid.put(orderId, payments.values().stream().mapToDouble(Double::doubleValue).sum())).isNull();
+            emitted[0] += discount;
+        });
+
+        solver.solve(orders);
+
+        assertThat(solver.getChunks()).isEqualTo(5);
+        assertThat(paid).hasSize(orders.size());
+        for (Order order : orders) {
+            assertThat(paid.get(order.getId())).isLessThanOrEqualTo(order.getValue() + 1e-6);
+        }
+        assertThat(emitted[0]).isCloseTo(solver.getObjective(), within(1e-6));
+        for (PaymentMethod pm : wallet.values()) {
+            assertThat(pm.getRemainingLimit()).isGreaterThanOrEqualTo(-1e-6);
+        }
+    }
+
+    /**
+     * Verifies that one chunk reproduces the full model, and that budgeting keeps the loss of smaller chunks small.
+     */
+    @Test
+    public void testLossAgainstFullModel() {
+        RollingHorizonSolver.Comparison single = RollingHorizonSolver.compare(orders, wallet, orders.size());
+        assertThat(single.getChunks()).isEqualTo(1);
+        assertThat(single.getLoss()).isCloseTo(0.0, within(1e-6));
+
+        RollingHorizonSolver.Comparison chunked = RollingHorizonSolver.compare(orders, wallet, 20);
+        assertThat(chunked.getChunks()).isEqualTo(6);
+        assertThat(chunked.getLoss()).isGreaterThanOrEqualTo(-1e-6);
+        assertThat(chunked.getRelativeLoss()).isLessThan(0.05);
+        assertThat(wallet.get("PUNKTY").getRemainingLimit()).isEqualTo(400.0);
+    }
+}
@@ -0,0 +1,131 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.model.Assignment;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.service.SolveCache;
+import com.optimusprice.service.SolverEngine;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for the canonical result cache.
+ */
+public class SolveCacheTest {
+
+    private List<Order> orders;
+    private SolveCache cache;
+    private SolverEngine engine;
+
+    /**
+     * Prepares the same orders as SolverServiceTest.
+     */
+    @BeforeEach
+    public void setUp() {
+        orders = TestFixtures.sampleOrders();
+        cache = new SolveCache(2);
+        engine = new SolverEngine("SCIP", 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.close();
+    }
+
+    /**
+     * Verifies that a repeated solve is answered from the cache with the same spending.
+     */
+    @Test
+    public void testSolverServiceHit() {
+        SolverService first = new SolverService(orders, TestFixtures.sampleWallet(50.0));
+        first.setCache(cache);
+        Map<String, PaymentMethod> solved = first.solve();
+
+        SolverService second = new SolverService(orders, TestFixtures.sampleWallet(50.0));
+        second.setCache(cache);
+        Map<String, PaymentMethod> cached = second.solve();
+
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(second.getLastMetrics()).isNull();
+        for (String id : solved.keySet()) {
+            assertThat(cached.get(id).getRemainingLimit()).isEqualTo(solved.get(id).getRemainingLimit());
+        }
+    }
+
+    /**
+     * Verifies that a hit deducts only what the cached solve spent, not what its wallet had spent before that solve.
+     */
+    @Test
+    public void testHitIgnoresEarlierSpending() {
+        Map<String, PaymentMethod> used = TestFixtures.sampleWallet();
+        used.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 100.0, 80.0));
+        SolverService first = new SolverService(orders, used);
+        first.setCache(cache);
+        first.solve();
+
+        SolverService second = new SolverService(orders, TestFixtures.sampleWallet());
+        second.setCache(cache);
+        Map<String, PaymentMethod> cached = second.solve();
+
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cached.get("KARTA1").getRemainingLimit()).isCloseTo(78.0, within(1e-6));
+        assertThat(cached.get("KARTA2").getRemainingLimit()).isCloseTo(57.5, within(1e-6));
+        assertThat(cached.get("PUNKTY").getRemainingLimit()).isCloseTo(0.0, within(1e-6));
+        assertThat(used.get("KARTA1").getRemainingLimit()).isCloseTo(58.0, within(1e-6));
+    }
+
+    /**
+     * Verifies that reordered orders with other IDs hit the same entry and get their own IDs back.
+     */
+    @Test
+    public void testCanonicalKeyIgnoresOrderIdsAndPositions() {
+        SolveResult original = cache.solve(orders, TestFixtures.sampleWallet(50.0), engine::solve);
+
+        List<Order> renamed = List.of(new Order("B", 50.0, List.of()),
+                new Order("C", 10.0, List.of("KARTA2", "KARTA1")), new Order("D", 40.0, List.of("KARTA2")),
+                new Order("E", 30.0, List.of("KARTA1")));
+        SolveResult cached = cache.solve(renamed, TestFixtures.sampleWallet(50.0), (o, w) -> {
+            throw new AssertionError("Expected a cache hit");
+        });
+
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cached.getSpent()).isEqualTo(original.getSpent());
+        assertThat(cached.getAssignments()).extracting(Assignment::getOrderId).containsExactly("B", "C", "D", "E");
+        assertThat(cached.getAssignments().get(0).getPayments())
+                .isEqualTo(original.getAssignments().get(3).getPayments());
+        assertThatThrownBy(() -> cached.getAssignments().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * Verifies that a different wallet misses and that the least recently used entry is evicted.
+     */
+    @Test
+    public void testMissAndEviction() {
+        SolveCache.Key a = cache.keyOf(orders, TestFixtures.sampleWallet(50.0));
+        SolveCache.Key b = cache.keyOf(orders, TestFixtures.sampleWallet(40.0));
+        assertThat(a.getHash()).isNotEqualTo(b.getHash());
+
+        cache.solve(orders, TestFixtures.sampleWallet(50.0), engine::solve);
+        cache.solve(orders, TestFixtures.sampleWallet(40.0), engine::solve);
+        cache.solve(orders, TestFixtures.sampleWallet(50.0), engine::solve);
+        cache.solve(orders, TestFixtures.sampleWallet(30.0), engine::solve);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(cache.keyOf(orders, TestFixtures.sampleWallet(50.0)), orders)).isNotNull();
+        assertThat(cache.get(cache.keyOf(orders, TestFixtures.sampleWallet(40.0)), orders)).isNull();
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,100 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import com.optimusprice.service.SolveRecorder;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for saving slow solves and replaying them.
+ */
+public class SolveRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    /**
+     * Verifies that a solve over the threshold leaves the input, the model in MPS format and one variant per model
+     * column, that the snapshot replays to the same discount under several backends, that a snapshot without orders
+     * replays to a line saying so, and that an unknown backend gets a usage message.
+     */
+    @Test
+    public void testSlowSolveIsSavedAndReplays() throws IOException, InterruptedException {
+        SolverService service = new SolverService(TestFixtures.sampleOrders(), TestFixtures.sampleWallet());
+        service.setRecorder(new SolveRecorder(directory, 0));
+        service.solve();
+        SolveRecorder.awaitWrites();
+
+        List<Path> files = files();
+        assertThat(files).hasSize(3);
+        Path snapshot = files.stream().filter(p -> p.toString().endsWith(".json")).findFirst().orElseThrow();
+        String mps = Files
+                .readString(files.stream().filter(p -> p.toString().endsWith(".mps")).findFirst().orElseThrow());
+        List<String> variants = Files.readAllLines(
+                files.stream().filter(p -> p.toString().endsWith(".variants.jsonl")).findFirst().orElseThrow());
+
+        assertThat(mps).contains("ROWS", "COLUMNS", "RHS");
+        assertThat(variants).hasSize((int) service.getLastMetrics().getVariables());
+        assertThat(variants.get(0)).contains("\"orderId\":\"ORDER1\"");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exit = App.replay(snapshot, List.of("SCIP", "EXACT"), new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(exit).isZero();
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).startsWith("recorded SCIP").contains("OPTIMAL", "objective 15.50");
+        assertThat(lines.get(1)).startsWith("SCIP").contains("OPTIMAL", "objective 15.50");
+        assertThat(lines.get(2)).startsWith("EXACT").contains("OPTIMAL", "objective 15.50");
+
+        out.reset();
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode tree = (ObjectNode) mapper.readTree(snapshot.toFile());
+        ((ObjectNode) tree.get("problem")).putArray("orders");
+        Path empty = directory.resolve("empty.json");
+        mapper.writeValue(empty.toFile(), tree);
+        assertThat(App.replay(empty, List.of("SCIP"), new PrintStream(out, true, StandardCharsets.UTF_8))).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8).lines().toList()).element(1).isEqualTo("SCIP no orders");
+
+        out.reset();
+        assertThat(App.replay(snapshot, List.of("SCIP", "GUROBI"), new PrintStream(out, true, StandardCharsets.UTF_8)))
+                .isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("Unknown backend GUROBI").contains("CP_SAT",
+                "Usage:");
+    }
+
+    /**
+     * Verifies that solves under the threshold leave nothing behind, including streamed ones.
+     */
+    @Test
+    public void testFastSolveIsNotSaved() throws IOException, InterruptedException {
+        SolverService service = new SolverService(TestFixtures.sampleOrders(), TestFixtures.sampleWallet());
+        service.setRecorder(new SolveRecorder(directory, 60_000));
+        service.solve();
+        service.solve(TestFixtures.sampleOrders().iterator());
+        SolveRecorder.awaitWrites();
+
+        assertThat(files()).isEmpty();
+    }
+}
@@ -0,0 +1,111 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.Problem;
+import com.optimusprice.server.SolveServer;
+import com.optimusprice.service.SolverEngine;
+
+/**
+ * Unit tests for the HTTP solve service.
+ */
+public class SolveServerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SolveServer server;
+    private Problem problem;
+
+    /**
+     * Starts a server on an ephemeral port and prepares the same problem as SolverServiceTest.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new SolveServer(0, new SolverEngine("SCIP", 2), Duration.ofMillis(1), 16);
+        server.start();
+
+        problem = new Problem("CUSTOMER1",
+                List.of(new Order("ORDER1", 30.0, List.of("KARTA1")), new Order("ORDER2", 40.0, List.of("KARTA2")),
+                        new Order("ORDER3", 10.0, List.of("KARTA1", "KARTA2")), new Order("ORDER4", 50.0, List.of())),
+                List.of(new PaymentMethod("KARTA1", 5.0, 100.0), new PaymentMethod("KARTA2", 15.0, 100.0),
+                        new PaymentMethod("PUNKTY", 10.0, 50.0)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpRequest post(String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/solve"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    /**
+     * Verifies that a posted problem is solved to the same total discount as the CLI.
+     */
+    @Test
+    public void testSolveOverHttp() throws Exception {
+        HttpResponse<String> response = client.send(post(mapper.writeValueAsString(problem)),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode result = mapper.readTree(response.body());
+        assertThat(result.get("id").asText()).isEqualTo("CUSTOMER1");
+        assertThat(result.get("totalDiscount").asDouble()).isCloseTo(15.5, within(1e-6));
+        assertThat(result.get("spent").get("PUNKTY").asDouble()).isEqualTo(50.0);
+        assertThat(result.get("assignments")).hasSize(4);
+    }
+
+    /**
+     * Verifies that concurrent requests are batched without mixing up their results.
+     */
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            problem.setId("CUSTOMER" + i);
+            responses.add(
+                    client.sendAsync(post(mapper.writeValueAsString(problem)), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).get();
+            assertThat(response.statusCode()).isEqualTo(200);
+            JsonNode result = mapper.readTree(response.body());
+            assertThat(result.get("id").asText()).isEqualTo("CUSTOMER" + i);
+            assertThat(result.get("totalDiscount").asDouble()).isCloseTo(15.5, within(1e-6));
+        }
+    }
+
+    /**
+     * Verifies that malformed and infeasible problems are reported with client error codes.
+     */
+    @Test
+    public void testErrors() throws Exception {
+        assertThat(client.send(post("{\"orders\": ["), HttpResponse.BodyHandlers.ofString()).statusCode())
+                .isEqualTo(400);
+
+        problem.setPaymentMethods(List.of(new PaymentMethod("KARTA1", 5.0, 1.0)));
+        assertThat(client.send(post(mapper.writeValueAsString(problem)), HttpResponse.BodyHandlers.ofString())
+                .statusCode()).isEqualTo(422);
+    }
+}
@@ -0,0 +1,194 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.model.Assignment;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.model.SolveResult;
+import com.optimusprice.service.SolverEngine;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for the reusable SolverEngine.
+ */
+public class SolverEngineTest {
+
+    private Map<String, PaymentMethod> paymentMethods;
+    private List<Order> orders;
+    private SolverEngine engine;
+
+    /**
+     * Prepares the same payment methods and orders as SolverServiceTest.
+     */
+    @BeforeEach
+    public void setUp() {
+        paymentMethods = new HashMap<>();
+        paymentMethods.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 100.0));
+        paymentMethods.put("KARTA2", new PaymentMethod("KARTA2", 15.0, 100.0));
+        paymentMethods.put("PUNKTY", new PaymentMethod("PUNKTY", 10.0, 50.0));
+
+        orders = List.of(new Order("ORDER1", 30.0, List.of("KARTA1")), new Order("ORDER2", 40.0, List.of("KARTA2")),
+                new Order("ORDER3", 10.0, List.of("KARTA1", "KARTA2")), new Order("ORDER4", 50.0, List.of()));
+
+        engine = new SolverEngine("SCIP", 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.close();
+    }
+
+    /**
+     * Verifies that the engine spends the same amounts as a fresh SolverService and leaves its inputs untouched.
+     */
+    @Test
+    public void testSolveMatchesSolverService() {
+        SolveResult result = engine.solve(orders, paymentMethods);
+
+        for (PaymentMethod method : paymentMethods.values()) {
+            assertThat(method.getRemainingLimit()).isEqualTo(method.getLimit());
+        }
+
+        Map<String, PaymentMethod> expected = new SolverService(orders, paymentMethods).solve();
+        for (Map.Entry<String, PaymentMethod> entry : expected.entrySet()) {
+            double spent = entry.getValue().getLimit() - entry.getValue().getRemainingLimit();
+            assertThat(result.getSpent().get(entry.getKey())).isEqualTo(spent);
+        }
+        assertThat(result.getAssignments()).hasSize(orders.size());
+    }
+
+    /**
+     * Verifies that pooled solvers are reset between calls so repeated solves give identical results.
+     */
+    @Test
+    public void testRepeatedSolvesReuseSolvers() {
+        SolveResult first = engine.solve(orders, paymentMethods);
+        for (int i = 0; i < 5; i++) {
+            SolveResult next = engine.solve(orders, paymentMethods);
+            assertThat(next.getSpent()).isEqualTo(first.getSpent());
+            assertThat(next.getTotalDiscount()).isEqualTo(first.getTotalDiscount());
+        }
+    }
+
+    /**
+     * Ensures results cannot be modified by callers.
+     */
+    @Test
+    public void testResultIsImmutable() {
+        SolveResult result = engine.solve(orders, paymentMethods);
+
+        assertThatThrownBy(() -> result.getSpent().put("KARTA1", 0.0))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> result.getAssignments().get(0).getPayments().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * Verifies that solving independent components in parallel reaches the same discount as a single model, both when
+     * tight limits couple the orders and when loose limits split them into many components.
+     */
+    @Test
+    public void testDecomposedSolveMatchesSingleModel() {
+        for (double looseLimit : new double[] { 150.0, 10_000.0 }) {
+            Random random = new Random(42);
+            Map<String, PaymentMethod> wallet = new HashMap<>();
+            wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 15.0, looseLimit));
+            for (int m = 0; m < 6; m++) {
+                wallet.put("KARTA" + m, new PaymentMethod("KARTA" + m, 5.0 + m, m % 2 == 0 ? 150.0 : 10_000.0));
+            }
+            if (looseLimit > 150.0) {
+                wallet.values().forEach(pm -> pm.setLimit(looseLimit));
+            }
+
+            List<Order> manyOrders = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                manyOrders.add(new Order("ORDER" + i, 10 + random.nextInt(90), List.of("KARTA" + random.nextInt(6))));
+            }
+
+            SolveResult single = engine.solve(manyOrders, wallet);
+            SolveResult decomposed = engine.solveDecomposed(manyOrders, wallet);
+
+            assertThat(decomposed.getAssignments()).hasSize(manyOrders.size());
+            assertThat(decomposed.getTotalDiscount()).isCloseTo(single.getTotalDiscount(), within(1e-6));
+            for (Map.Entry<String, Double> entry : decomposed.getSpent().entrySet()) {
+                assertThat(entry.getValue()).isLessThanOrEqualTo(wallet.get(entry.getKey()).getLimit() + 1e-6);
+            }
+        }
+    }
+
+    /**
+     * Verifies that an easy instance solved within a budget is still proven optimal, and that a budgeted result always
+     * respects the limits and reports a consistent bound.
+     */
+    @Test
+    public void testSolveWithinBudget() {
+        SolveResult exact = engine.solve(orders, paymentMethods);
+        SolveResult budgeted = engine.solveWithin(orders, paymentMethods, Duration.ofSeconds(5));
+
+        assertThat(budgeted.isOptimal()).isTrue();
+        assertThat(budgeted.getGap()).isZero();
+        assertThat(budgeted.getTotalDiscount()).isCloseTo(exact.getTotalDiscount(), within(1e-6));
+
+        Random random = new Random(7);
+        Map<String, PaymentMethod> wallet = new HashMap<>();
+        wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 15.0, 500.0));
+        for (int m = 0; m < 8; m++) {
+            wallet.put("KARTA" + m, new PaymentMethod("KARTA" + m, 5.0 + m, 2000.0));
+        }
+        List<Order> manyOrders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            manyOrders.add(new Order("ORDER" + i, 10 + random.nextInt(90), List.of("KARTA" + random.nextInt(8))));
+        }
+
+        SolveResult result = engine.solveWithin(manyOrders, wallet, Duration.ofMillis(50));
+        assertThat(result.getAssignments()).hasSize(manyOrders.size());
+        assertThat(result.getBestBound()).isGreaterThanOrEqualTo(result.getTotalDiscount() - 1e-6);
+        assertThat(result.getGap()).isBetween(0.0, 1.0);
+        for (Map.Entry<String, Double> entry : result.getSpent().entrySet()) {
+            assertThat(entry.getValue()).isLessThanOrEqualTo(wallet.get(entry.getKey()).getLimit() + 1e-6);
+        }
+    }
+
+    /**
+     * Verifies that aggregating repeated orders reaches the same discount as one variable set per order and still
+     * assigns every order exactly once.
+     */
+    @Test
+    public void testAggregatedSolveMatchesPerOrderModel() {
+        Random random = new Random(11);
+        Map<String, PaymentMethod> wallet = new HashMap<>();
+        wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 15.0, 300.0));
+        wallet.put("KARTA1", new PaymentMethod("KARTA1", 10.0, 600.0));
+        wallet.put("KARTA2", new PaymentMethod("KARTA2", 5.0, 2_000.0));
+
+        List<Order> manyOrders = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            List<String> promos = random.nextBoolean() ? List.of("KARTA1") : List.of("KARTA2", "KARTA1");
+            manyOrders.add(new Order("ORDER" + i, 20 * (1 + random.nextInt(3)), promos));
+        }
+
+        SolveResult single = engine.solve(manyOrders, wallet);
+        SolveResult aggregated = engine.solveAggregated(manyOrders, wallet);
+
+        assertThat(aggregated.getTotalDiscount()).isCloseTo(single.getTotalDiscount(), within(1e-6));
+        assertThat(aggregated.getAssignments()).extracting(Assignment::getOrderId)
+                .containsExactlyElementsOf(manyOrders.stream().map(Order::getId).toList());
+        for (Map.Entry<String, Double> entry : aggregated.getSpent().entrySet()) {
+            assertThat(entry.getValue()).isLessThanOrEqualTo(wallet.get(entry.getKey()).getLimit() + 1e-6);
+        }
+    }
+}
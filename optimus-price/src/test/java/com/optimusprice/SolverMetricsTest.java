@@ -0,0 +1,79 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.metrics.MetricsSnapshot;
+import com.optimusprice.metrics.SolveMetrics;
+import com.optimusprice.metrics.SolvePhase;
+import com.optimusprice.metrics.SolverMetrics;
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.service.SolverService;
+
+/**
+ * Unit tests for the per-solve metrics and their global aggregate.
+ */
+public class SolverMetricsTest {
+
+    private Map<String, PaymentMethod> paymentMethods;
+    private List<Order> orders;
+
+    /**
+     * Prepares the same payment methods and orders as SolverServiceTest.
+     */
+    @BeforeEach
+    public void setUp() {
+        paymentMethods = new HashMap<>();
+        paymentMethods.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 100.0));
+        paymentMethods.put("KARTA2", new PaymentMethod("KARTA2", 15.0, 100.0));
+        paymentMethods.put("PUNKTY", new PaymentMethod("PUNKTY", 10.0, 50.0));
+
+        orders = List.of(new Order("ORDER1", 30.0, List.of("KARTA1")), new Order("ORDER2", 40.0, List.of("KARTA2")),
+                new Order("ORDER3", 10.0, List.of("KARTA1", "KARTA2")), new Order("ORDER4", 50.0, List.of()));
+    }
+
+    /**
+     * Verifies that a solve reports its phase timings, model size and outcome.
+     */
+    @Test
+    public void testSolveReportsMetrics() {
+        SolverService service = new SolverService(orders, paymentMethods);
+        service.solve();
+        SolveMetrics metrics = service.getLastMetrics();
+
+        assertThat(metrics.getStatus()).isEqualTo("OPTIMAL");
+        assertThat(metrics.getOrders()).isEqualTo(orders.size());
+        assertThat(metrics.getConstraints()).isEqualTo(orders.size() + paymentMethods.size());
+        assertThat(metrics.getVariables()).isPositive();
+        assertThat(metrics.getNonZeros()).isGreaterThan(metrics.getVariables());
+        assertThat(metrics.getGap()).isZero();
+        assertThat(metrics.getObjective()).isEqualTo(metrics.getBestBound());
+        for (SolvePhase phase : SolvePhase.values()) {
+            assertThat(metrics.getPhaseNanos(phase)).as(phase.name()).isPositive();
+        }
+        assertThat(metrics.getTotalNanos()).isGreaterThanOrEqualTo(metrics.getPhaseNanos(SolvePhase.SOLVE));
+    }
+
+    /**
+     * Verifies that every solve is added to the global snapshot.
+     */
+    @Test
+    public void testSolvesAreAggregated() {
+        MetricsSnapshot before = SolverMetrics.global().snapshot();
+        new SolverService(orders, paymentMethods).solve();
+        MetricsSnapshot after = SolverMetrics.global().snapshot();
+
+        assertThat(after.getSolves()).isGreaterThan(before.getSolves());
+        assertThat(after.getPhaseNanos().get(SolvePhase.SOLVE))
+                .isGreaterThan(before.getPhaseNanos().get(SolvePhase.SOLVE));
+        assertThat(after.getMaxTotalNanos()).isPositive();
+        assertThat(after.getLast()).isNotNull();
+    }
+}
@@ -12,6 +12,7 @@ import java.lang.reflect.Method;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 /**
  * Unit tests for the SolverService logic, including variant generation, payment constraints, and distribution of
@@ -224,4 +225,133 @@ public class SolverServiceTest {
         assertThat(result.get("KARTA2").getLimit() - result.get("KARTA2").getRemainingLimit()).isEqualTo(64.50);
         assertThat(result.get("PUNKTY").getLimit() - result.get("PUNKTY").getRemainingLimit()).isEqualTo(50.00);
     }
+
+    /**
+     * Verifies that a points+card variant is pruned when paying fully with the same promo card is cheaper and gives a
+     * higher discount.
+     */
+    @Test
+    public void testDominatedVariantsArePruned() throws Exception {
+        paymentMethods.put("KARTA2", new PaymentMethod("KARTA2", 25.0, 100.0));
+        List<Order> localOrders = List.of(new Order("ORDER2", 40.0, List.of("KARTA2")));
+        SolverService solverService = new SolverService(localOrders, paymentMethods);
+
+        Method method = SolverService.class.getDeclaredMethod("generateAllVariants");
+        method.setAccessible(true);
+
+        List<List<Variant>> result = (List<List<Variant>>) method.invoke(solverService);
+
+        assertThat(solverService.getPrunedVariants()).isEqualTo(1);
+        assertThat(result.get(0)).hasSize(4);
+        assertThat(result.get(0))
+                .noneMatch(v -> v.getMethods().containsKey("PUNKTY") && v.getMethods().containsKey("KARTA2"));
+    }
+
+    /**
+     * Verifies that generating the variants of a batch spanning several slices in parallel yields exactly the variants
+     * of a sequential generation, in the same order, including methods whose limit equals an order's value.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testParallelGenerationMatchesSequential() throws Exception {
+        Random random = new Random(23);
+        Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+        wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 10.0, 500.0));
+        for (int m = 0; m < 90; m++) {
+            double limit = m % 10 == 0 ? 150.0 : 10 + random.nextInt(50000) / 100.0;
+            wallet.put("KARTA" + m, new PaymentMethod("KARTA" + m, 1 + random.nextInt(20), limit));
+        }
+        List<Order> batch = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            double value = i % 7 == 0 ? 150.0 : 1 + random.nextInt(50000) / 100.0;
+            List<String> promos = List.of("KARTA" + random.nextInt(90), "KARTA" + random.nextInt(120));
+            batch.add(new Order("ORDER" + i, value, i % 5 == 0 ? null : promos));
+        }
+
+        Method method = SolverService.class.getDeclaredMethod("generateAllVariants");
+        method.setAccessible(true);
+        SolverService sequential = new SolverService(batch, wallet);
+        sequential.setParallelGeneration(false);
+        SolverService parallel = new SolverService(batch, wallet);
+        parallel.setParallelGeneration(true);
+
+        List<List<Variant>> expected = (List<List<Variant>>) method.invoke(sequential);
+        List<List<Variant>> actual = (List<List<Variant>>) method.invoke(parallel);
+
+        assertThat(actual).hasSameSizeAs(batch);
+        assertThat(parallel.getPrunedVariants()).isEqualTo(sequential.getPrunedVariants());
+        for (int i = 0; i < batch.size(); i++) {
+            assertThat(describe(actual.get(i))).as(batch.get(i).getId()).isEqualTo(describe(expected.get(i)));
+        }
+    }
+
+    /**
+     * Verifies that with limits no combination of variants can exhaust, every order is fixed by presolve, no model is
+     * built, and the discount equals the one found by the solver.
+     */
+    @Test
+    public void testPresolveFixesOrdersWithNonBindingLimits() {
+        Map<String, PaymentMethod> presolved = new HashMap<>();
+        Map<String, PaymentMethod> solved = new HashMap<>();
+        for (PaymentMethod pm : paymentMethods.values()) {
+            presolved.put(pm.getId(), new PaymentMethod(pm.getId(), pm.getDiscount(), 1000.0));
+            solved.put(pm.getId(), new PaymentMethod(pm.getId(), pm.getDiscount(), 1000.0));
+        }
+
+        SolverService presolving = new SolverService(orders, presolved);
+        presolving.solve();
+        SolverService solving = new SolverService(orders, solved);
+        solving.setPresolve(false);
+        solving.solve();
+
+        assertThat(presolving.getLastMetrics().getPresolvedOrders()).isEqualTo(orders.size());
+        assertThat(presolving.getLastMetrics().getVariables()).isZero();
+        assertThat(presolving.getLastMetrics().getStatus()).isEqualTo("OPTIMAL");
+        assertThat(presolving.getLastMetrics().getObjective()).isCloseTo(solving.getLastMetrics().getObjective(),
+                within(1e-9));
+        for (String id : presolved.keySet()) {
+            assertThat(presolved.get(id).getRemainingLimit()).as(id).isGreaterThanOrEqualTo(0.0);
+        }
+    }
+
+    /**
+     * Verifies that only orders which may compete for a binding limit reach the solver: the points limit binds for the
+     * two small orders, while the large ones cannot use points at all.
+     */
+    @Test
+    public void testPresolveLeavesCoupledOrdersToSolver() {
+        List<Order> mixed = List.of(new Order("SMALL1", 100.0, List.of()),
+                new Order("LARGE1", 300.0, List.of("KARTA1")), new Order("SMALL2", 150.0, List.of("KARTA2")),
+                new Order("LARGE2", 400.0, List.of()));
+        Map<String, PaymentMethod> presolved = new HashMap<>();
+        Map<String, PaymentMethod> solved = new HashMap<>();
+        for (Map<String, PaymentMethod> wallet : List.of(presolved, solved)) {
+            wallet.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 5000.0));
+            wallet.put("KARTA2", new PaymentMethod("KARTA2", 15.0, 5000.0));
+            wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 10.0, 20.0));
+        }
+
+        SolverService presolving = new SolverService(mixed, presolved);
+        presolving.solve();
+        SolverService solving = new SolverService(mixed, solved);
+        solving.setPresolve(false);
+        solving.solve();
+
+        assertThat(presolving.getLastMetrics().getPresolvedOrders()).isEqualTo(2);
+        assertThat(presolving.getLastMetrics().getConstraints()).isEqualTo(2 + presolved.size());
+        assertThat(presolving.getLastMetrics().getObjective()).isCloseTo(solving.getLastMetrics().getObjective(),
+                within(1e-9));
+        for (String id : presolved.keySet()) {
+            assertThat(presolved.get(id).getRemainingLimit()).as(id).isCloseTo(solved.get(id).getRemainingLimit(),
+                    within(1e-9));
+        }
+    }
+
+    private static List<String> describe(List<Variant> variants) {
+        List<String> result = new ArrayList<>();
+        for (Variant v : variants) {
+            result.add(v.getOrderId() + " " + new TreeMap<>(v.getMethods()) + " " + v.getDiscount());
+        }
+        return result;
+    }
 }
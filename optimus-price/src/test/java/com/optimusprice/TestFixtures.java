@@ -0,0 +1,108 @@
+package com.optimusprice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+
+/**
+ * Inputs shared by the tests: the small wallet and orders of SolverServiceTest, and seeded random batches for tests
+ * that need more orders than that. Cards of the random batches are named {@code KARTA0}, {@code KARTA1}, ... and every
+ * order is promoted on cards drawn at random.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Creates the wallet of SolverServiceTest.
+     *
+     * @return Two cards with limits of 100 and 50 points, keyed by ID
+     */
+    static Map<String, PaymentMethod> sampleWallet() {
+        return sampleWallet(50.0);
+    }
+
+    /**
+     * Creates the wallet of SolverServiceTest with another points limit.
+     *
+     * @param pointsLimit
+     *            Limit of the 10% points
+     *
+     * @return Two cards with limits of 100 and the points, keyed by ID
+     */
+    static Map<String, PaymentMethod> sampleWallet(double pointsLimit) {
+        Map<String, PaymentMethod> paymentMethods = new LinkedHashMap<>();
+        paymentMethods.put("KARTA1", new PaymentMethod("KARTA1", 5.0, 100.0));
+        paymentMethods.put("KARTA2", new PaymentMethod("KARTA2", 15.0, 100.0));
+        paymentMethods.put("PUNKTY", new PaymentMethod("PUNKTY", 10.0, pointsLimit));
+        return paymentMethods;
+    }
+
+    /**
+     * Creates the orders of SolverServiceTest, whose optimum on {@link #sampleWallet()} is a discount of 15.50.
+     *
+     * @return Four orders
+     */
+    static List<Order> sampleOrders() {
+        return List.of(new Order("ORDER1", 30.0, List.of("KARTA1")), new Order("ORDER2", 40.0, List.of("KARTA2")),
+                new Order("ORDER3", 10.0, List.of("KARTA1", "KARTA2")), new Order("ORDER4", 50.0, List.of()));
+    }
+
+    /**
+     * Creates a wallet in which the points and all cards but the first are scarce, while the first card can pay for any
+     * batch, so that every order stays payable.
+     *
+     * @param points
+     *            Limit of the 15% points
+     * @param cards
+     *            Number of cards
+     * @param discountStep
+     *            Card {@code m} gives a discount of {@code 5 + m * discountStep} percent
+     * @param cardLimit
+     *            Limit of every card but the first
+     *
+     * @return Payment methods keyed by ID, points first
+     */
+    static Map<String, PaymentMethod> randomWallet(double points, int cards, double discountStep, double cardLimit) {
+        Map<String, PaymentMethod> wallet = new LinkedHashMap<>();
+        wallet.put("PUNKTY", new PaymentMethod("PUNKTY", 15.0, points));
+        for (int m = 0; m < cards; m++) {
+            wallet.put("KARTA" + m,
+                    new PaymentMethod("KARTA" + m, 5.0 + discountStep * m, m == 0 ? 100_000.0 : cardLimit));
+        }
+        return wallet;
+    }
+
+    /**
+     * Draws orders worth a whole amount from 10 to 99.
+     *
+     * @param random
+     *            Source of the values and promotions
+     * @param count
+     *            Number of orders, named {@code ORDER0}, {@code ORDER1}, ...
+     * @param cards
+     *            Number of cards promotions are drawn from
+     * @param promotions
+     *            Promotions per order, drawn independently
+     *
+     * @return Orders
+     */
+    static List<Order> randomOrders(Random random, int count, int cards, int promotions) {
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double value = 10 + random.nextInt(90);
+            List<String> promos = new ArrayList<>(promotions);
+            for (int p = 0; p < promotions; p++) {
+                promos.add("KARTA" + random.nextInt(cards));
+            }
+            orders.add(new Order("ORDER" + i, value, List.copyOf(promos)));
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,97 @@
+package com.optimusprice;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.optimusprice.model.Order;
+import com.optimusprice.model.PaymentMethod;
+import com.optimusprice.service.SolverEngine;
+import com.optimusprice.service.WhatIfAnalyzer;
+
+/**
+ * Unit tests for what-if analysis over payment method limits.
+ */
+public class WhatIfAnalyzerTest {
+
+    private Map<String, PaymentMethod> wallet;
+    private List<Order> orders;
+
+    /**
+     * Prepares a batch in which the loyalty points are the binding limit.
+     */
+    @BeforeEach
+    public void setUp() {
+        wallet = TestFixtures.randomWallet(200.0, 3, 3.0, 800.0);
+        orders = TestFixtures.randomOrders(new Random(3), 40, 3, 1);
+    }
+
+    /**
+     * Verifies that every point of a sweep matches a cold solve with the same limit and that the curve never decreases.
+     */
+    @Test
+    public void testSweepMatchesColdSolves() {
+        double[] points = { 300.0, 0.0, 240.0, 200.0, 100.0 };
+        List<WhatIfAnalyzer.Point> curve = WhatIfAnalyzer.curve(orders, wallet, "PUNKTY", points);
+
+        assertThat(curve).extracting(WhatIfAnalyzer.Point::getLimit).containsExactly(0.0, 100.0, 200.0, 240.0, 300.0);
+        try (SolverEngine engine = new SolverEngine("SCIP", 1)) {
+            double previous = Double.NEGATIVE_INFINITY;
+            for (WhatIfAnalyzer.Point point : curve) {
+                Map<String, PaymentMethod> scenario = new LinkedHashMap<>(wallet);
+                scenario.put("PUNKTY", new PaymentMethod("PUNKTY", 15.0, point.getLimit()));
+                assertThat(point.getDiscount()).isCloseTo(engine.solve(orders, scenario).getTotalDiscount(),
+                        within(1e-6));
+                assertThat(point.getDiscount()).isGreaterThanOrEqualTo(previous - 1e-6);
+                previous = point.getDiscount();
+            }
+        }
+        assertThat(wallet.get("PUNKTY").getLimit()).isEqualTo(200.0);
+    }
+
+    /**
+     * Verifies that scenarios may change several limits at once, and that limits the model was not built for are
+     * rejected.
+     */
+    @Test
+    public void testScenarioLimits() {
+        try (WhatIfAnalyzer analyzer = new WhatIfAnalyzer(orders, wallet, Map.of("PUNKTY", 240.0))) {
+            double base = analyzer.solve(Map.of());
+            double raised = analyzer.solve(Map.of("PUNKTY", 240.0));
+            double tighter = analyzer.solve(Map.of("PUNKTY", 240.0, "KARTA2", 100.0));
+
+            assertThat(raised).isGreaterThan(base);
+            assertThat(tighter).isLessThan(raised);
+            assertThatThrownBy(() -> analyzer.solve(Map.of("PUNKTY", 300.0)))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> analyzer.solve(Map.of("BLIK", 10.0))).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    /**
+     * Verifies that a dense sweep skips the solver on plateaus and for limits the previous solution still fits.
+     */
+    @Test
+    public void testDenseSweepSkipsSolves() {
+        double[] points = new double[40];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = 100.0 * i;
+        }
+
+        try (WhatIfAnalyzer analyzer = new WhatIfAnalyzer(orders, wallet, Map.of("PUNKTY", 4000.0))) {
+            List<WhatIfAnalyzer.Point> curve = analyzer.sweep("PUNKTY", points);
+
+            assertThat(analyzer.getSolves()).isLessThan(points.length);
+            assertThat(curve.get(2).getDiscount()).isCloseTo(analyzer.solve(Map.of("PUNKTY", 200.0)), within(1e-6));
+            assertThat(curve.get(39).getDiscount()).isCloseTo(curve.get(30).getDiscount(), within(1e-6));
+        }
+    }
+}